@@ -0,0 +1,116 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.dfa;
+
+import com.nano.regexcv.RegexCache;
+import com.nano.regexcv.RegexTestCase;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares {@link DfaTable#matchAll} with matching the inputs one at a time.
+ *
+ * <p>In the {@code corpus} case, every pattern of {@code regex_test_cases.txt} matches a batch made
+ * of all strings of the file. In the {@code large} case, a DFA of about 2 MiB, which does not fit
+ * in the CPU caches, matches random strings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchAllBenchmark {
+
+  @Param({"corpus", "large"})
+  public String tables;
+
+  /** The number of times the strings are repeated in a batch. */
+  @Param({"1", "64"})
+  public int repeat;
+
+  private DfaTable[] dfaTables;
+  private CharSequence[] inputs;
+  private boolean[] out;
+
+  @Setup
+  public void setup() throws IOException {
+    var strs = new ArrayList<String>();
+    if (tables.equals("large")) {
+      // Any string with an 'a' 16 characters before its end, which needs 2^17 states.
+      dfaTables = new DfaTable[] {RegexCache.compile("[a-d]*a" + "[a-d]".repeat(16))};
+      var random = new Random(0);
+      for (int i = 0; i < 64 * repeat; i++) {
+        var sb = new StringBuilder();
+        random.ints(64, 'a', 'e').forEach(ch -> sb.append((char) ch));
+        strs.add(sb.toString());
+      }
+    } else {
+      var testCases = RegexTestCase.parseFile("regex_test_cases.txt");
+      dfaTables =
+          Arrays.stream(testCases)
+              .flatMap(tc -> Arrays.stream(tc.patterns))
+              .map(RegexCache::compile)
+              .toArray(DfaTable[]::new);
+      for (int i = 0; i < repeat; i++) {
+        for (var tc : testCases) {
+          Stream.of(tc.strsShouldBeMatched, tc.strsShouldNotBeMatched)
+              .flatMap(Arrays::stream)
+              .forEach(strs::add);
+        }
+      }
+      // Mix the lengths of the inputs in a batch.
+      Collections.shuffle(strs, new Random(0));
+    }
+    inputs = strs.toArray(CharSequence[]::new);
+    out = new boolean[inputs.length];
+  }
+
+  @Benchmark
+  public void oneAtATime(Blackhole bh) {
+    for (var table : dfaTables) {
+      for (int i = 0; i < inputs.length; i++) {
+        out[i] = table.matches(inputs[i]);
+      }
+      bh.consume(out);
+    }
+  }
+
+  @Benchmark
+  public void interleaved(Blackhole bh) {
+    for (var table : dfaTables) {
+      table.matchAll(inputs, out);
+      bh.consume(out);
+    }
+  }
+}
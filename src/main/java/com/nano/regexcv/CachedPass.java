@@ -0,0 +1,63 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv;
+
+import java.util.Objects;
+
+/**
+ * A pass that memoizes the result of another pass for the last input.
+ *
+ * <p>The cached result is shared by every caller, so passes that modify their input (such as {@link
+ * com.nano.regexcv.nfa.RemoveEpsilonClosurePass}) must run after the others that use it.
+ *
+ * <p>This class is not thread-safe.
+ */
+public class CachedPass<In, Out> implements Pass<In, Out> {
+
+  private final Pass<In, Out> pass;
+
+  private boolean hasResult;
+  private In lastInput;
+  private Out lastOutput;
+
+  public CachedPass(Pass<In, Out> pass) {
+    this.pass = pass;
+  }
+
+  @Override
+  public Out accept(In input) {
+    if (hasResult && Objects.equals(lastInput, input)) {
+      return lastOutput;
+    }
+    var output = pass.accept(input);
+    this.lastInput = input;
+    this.lastOutput = output;
+    this.hasResult = true;
+    return output;
+  }
+
+  /** Forgets the cached result. */
+  public void invalidate() {
+    this.hasResult = false;
+    this.lastInput = null;
+    this.lastOutput = null;
+  }
+
+  @Override
+  public Pass<In, Out> cached() {
+    return this;
+  }
+}
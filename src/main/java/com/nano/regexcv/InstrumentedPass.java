@@ -0,0 +1,50 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv;
+
+/**
+ * A pass that records the wall time, the allocated bytes and the output sizes of another pass into
+ * a {@link PassStatistics}.
+ */
+public class InstrumentedPass<In, Out> implements Pass<In, Out> {
+
+  private final String name;
+  private final Pass<In, Out> pass;
+  private final PassStatistics statistics;
+
+  public InstrumentedPass(String name, Pass<In, Out> pass, PassStatistics statistics) {
+    this.name = name;
+    this.pass = pass;
+    this.statistics = statistics;
+  }
+
+  @Override
+  public Out accept(In input) {
+    var allocatedBytes = PassStatistics.currentThreadAllocatedBytes();
+    var startTime = System.nanoTime();
+    var output = pass.accept(input);
+    var wallTime = System.nanoTime() - startTime;
+    if (allocatedBytes != -1) {
+      allocatedBytes = PassStatistics.currentThreadAllocatedBytes() - allocatedBytes;
+    }
+    statistics.record(name, wallTime, allocatedBytes, output);
+    return output;
+  }
+
+  public String getName() {
+    return name;
+  }
+}
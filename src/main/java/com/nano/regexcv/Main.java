@@ -15,23 +15,29 @@
  */
 package com.nano.regexcv;
 
+import com.nano.regexcv.batch.BatchCommand;
 import com.nano.regexcv.dfa.Dfa2DigraphPass;
 import com.nano.regexcv.dfa.DfaMinimizer;
 import com.nano.regexcv.dfa.SubsetConstructionPass;
+import com.nano.regexcv.grep.GrepCommand;
 import com.nano.regexcv.nfa.Nfa;
 import com.nano.regexcv.nfa.Nfa2DigraphPass;
-import com.nano.regexcv.nfa.RExpTree2NfaPass;
 import com.nano.regexcv.nfa.RemoveEpsilonClosurePass;
-import com.nano.regexcv.syntax.RegexParser;
+import com.nano.regexcv.server.CompileServer;
 import com.nano.regexcv.syntax.RegexSyntaxErrorException;
-import com.nano.regexcv.table.CharacterSetCollector;
 import com.nano.regexcv.util.Digraph;
 import com.nano.regexcv.util.DigraphDotGenerator;
 import com.nano.regexcv.util.MergingDigraphEdges;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
@@ -43,17 +49,43 @@ public class Main {
     String E_DESCRIPTION = "Remove the ε-closure of the NFA digraph";
     String REDUCE_DESCRIPTION = "Reduce the edges of the generated digraph";
     String MINIMIZE_DFA_DESCRIPTION = "Minimize the generated DFA.";
+    String STATS_DESCRIPTION =
+        "Print the time, allocated bytes and output size of each pass as JSON instead of digraphs";
+    String ALL_DESCRIPTION =
+        "Convert the regex into the NFA, ε-closure-free NFA, DFA and minimized DFA digraphs";
+    String SERVE_DESCRIPTION =
+        "Serve the conversion requests of clients of the Unix domain socket instead of converting"
+            + " a regex";
 
-    String CMD_USAGE = "regexcv [OPTIONS] <regular expression>\n\n";
+    String CMD_USAGE =
+        "regexcv [OPTIONS] <regular expression>\n"
+            + "       regexcv --serve <socket>\n"
+            + "       regexcv grep [OPTIONS] <regular expression> <file or directory>...\n"
+            + "       regexcv batch [OPTIONS] -o <directory> [<file of regexes> | -]\n\n";
+
+    String USAGE_FOOTER =
+        "\nA first argument of grep or batch selects the subcommand. To convert a regex that is"
+            + " grep or batch, or that starts with -, put it after --, e.g. regexcv -- grep";
 
     String ERROR_MISSING_ARG =
         "Error: regexcv requires an argument representing the regular expression";
   }
 
   public static void main(String... args) {
+    // A regex named like a subcommand is converted after "--", which ends the options below.
+    if (args.length > 0 && args[0].equals("grep")) {
+      System.exit(GrepCommand.run(Arrays.copyOfRange(args, 1, args.length)));
+    }
+    if (args.length > 0 && args[0].equals("batch")) {
+      System.exit(BatchCommand.run(Arrays.copyOfRange(args, 1, args.length)));
+    }
     Options options = defineOptions();
     CommandLine cl = parseOptions(options, args);
-    run(cl);
+    if (cl.hasOption("serve")) {
+      serve(Path.of(cl.getOptionValue("serve")));
+    } else {
+      run(cl);
+    }
   }
 
   private static Options defineOptions() {
@@ -65,6 +97,15 @@ public class Main {
     options.addOption("e", false, Msg.E_DESCRIPTION);
     options.addOption("m", false, Msg.MINIMIZE_DFA_DESCRIPTION);
     options.addOption("r", false, Msg.REDUCE_DESCRIPTION);
+    options.addOption("a", "all", false, Msg.ALL_DESCRIPTION);
+    options.addOption(Option.builder().longOpt("stats").desc(Msg.STATS_DESCRIPTION).build());
+    options.addOption(
+        Option.builder()
+            .longOpt("serve")
+            .hasArg()
+            .argName("socket")
+            .desc(Msg.SERVE_DESCRIPTION)
+            .build());
     return options;
   }
 
@@ -80,7 +121,7 @@ public class Main {
         printUsage(options);
         System.exit(0);
       }
-      if (cl.getArgs().length <= 0) {
+      if (cl.getArgs().length <= 0 && !cl.hasOption("serve")) {
         throw new ParseException(Msg.ERROR_MISSING_ARG);
       }
       return cl;
@@ -100,44 +141,97 @@ public class Main {
     HelpFormatter hf = new HelpFormatter();
     hf.setLongOptPrefix(" --");
     hf.setOptionComparator(null);
-    hf.printHelp(Msg.CMD_USAGE, options);
+    hf.printHelp(Msg.CMD_USAGE, null, options, Msg.USAGE_FOOTER);
   }
 
   private static void run(CommandLine cl) {
     var regex = cl.getArgs()[0];
-    var pass = combinePasses(cl);
-    if (cl.hasOption("r")) {
-      pass = pass.next(new MergingDigraphEdges());
-    }
+    var stats = cl.hasOption("stats") ? new PassStatistics() : null;
+    var pass = combinePasses(cl, Pipelines.recorded(regex, stats));
     try {
-      System.out.println(pass.next(new DigraphDotGenerator()).accept(regex));
+      var dots = pass.accept(regex);
+      if (stats != null) {
+        System.out.println(stats.toJson());
+        return;
+      }
+      for (var dot : dots) {
+        System.out.println(dot);
+      }
     } catch (RegexSyntaxErrorException e) {
       System.err.println(e.getMessage());
       System.exit(8);
     }
   }
 
-  private static Pass<String, Digraph> combinePasses(CommandLine cl) {
-    var pass = new RegexParser().next(new CharacterSetCollector()).next(new RExpTree2NfaPass());
-    if (cl.hasOption('D')) {
-      return getDfaPass(pass, cl);
-    } else {
-      return getNfaPass(pass, cl);
+  /**
+   * Serves the clients of the socket until the JVM is terminated. The shutdown hook is the only
+   * owner of the server, it closes the server and deletes the socket file however the JVM exits.
+   */
+  private static void serve(Path socket) {
+    try {
+      var server = CompileServer.bind(socket);
+      Runtime.getRuntime()
+          .addShutdownHook(
+              new Thread(
+                  () -> {
+                    try {
+                      server.close();
+                    } catch (IOException e) {
+                      System.err.println(e.getMessage());
+                    }
+                  }));
+      server.warmUp();
+      System.err.println("regexcv: listening on " + socket);
+      server.serve();
+    } catch (IOException e) {
+      System.err.println("regexcv: " + socket + ": " + e.getMessage());
+      System.exit(5);
     }
   }
 
-  private static Pass<String, Digraph> getDfaPass(Pass<String, Nfa> pass, CommandLine cl) {
-    var dfaPass = pass.next(new SubsetConstructionPass());
-    if (cl.hasOption("m")) {
-      dfaPass = dfaPass.next(new DfaMinimizer());
+  /**
+   * Combines the passes that generate the requested digraphs. All digraphs share one parsing, one
+   * character table and one NFA.
+   *
+   * @param stages Wraps every pass to record it.
+   */
+  private static Pass<String, List<String>> combinePasses(
+      CommandLine cl, Pipelines.StageWrapper stages) {
+    var all = cl.hasOption("a");
+    var outputsDfa = all || cl.hasOption("D");
+    var outputsNfa = all || cl.hasOption("N") || !outputsDfa;
+
+    var branches = new ArrayList<Pass<Nfa, Digraph>>();
+    if (outputsNfa && (all || !cl.hasOption("e"))) {
+      branches.add(stages.wrap("nfa-digraph", new Nfa2DigraphPass()));
+    }
+    if (outputsDfa) {
+      var dfaPass = stages.wrap("subset-construction", new SubsetConstructionPass()).cached();
+      if (all || !cl.hasOption("m")) {
+        branches.add(dfaPass.next(stages.wrap("dfa-digraph", new Dfa2DigraphPass())));
+      }
+      if (all || cl.hasOption("m")) {
+        branches.add(
+            dfaPass
+                .next(stages.wrap("minimization", new DfaMinimizer()))
+                .next(stages.wrap("dfa-digraph", new Dfa2DigraphPass())));
+      }
+    }
+    // Removing the ε-closure modifies the shared NFA, so it must be the last branch.
+    if (outputsNfa && (all || cl.hasOption("e"))) {
+      branches.add(
+          stages
+              .wrap("epsilon-removal", new RemoveEpsilonClosurePass())
+              .next(stages.wrap("nfa-digraph", new Nfa2DigraphPass())));
     }
-    return dfaPass.next(new Dfa2DigraphPass());
-  }
 
-  private static Pass<String, Digraph> getNfaPass(Pass<String, Nfa> pass, CommandLine cl) {
-    if (cl.hasOption("e")) {
-      pass = pass.next(new RemoveEpsilonClosurePass());
+    var outputs = new ArrayList<Pass<Nfa, String>>(branches.size());
+    for (var branch : branches) {
+      if (cl.hasOption("r")) {
+        branch = branch.next(stages.wrap("merging-edges", new MergingDigraphEdges()));
+      }
+      outputs.add(branch.next(stages.wrap("dot-generation", new DigraphDotGenerator())));
     }
-    return pass.next(new Nfa2DigraphPass());
+    return Pipelines.nfa(stages).next(Pass.tee(outputs));
   }
 }
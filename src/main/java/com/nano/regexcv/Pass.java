@@ -15,6 +15,9 @@
  */
 package com.nano.regexcv;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public interface Pass<In, Out> {
   Out accept(In input);
 
@@ -24,4 +27,43 @@ public interface Pass<In, Out> {
       return next.accept(out);
     };
   }
+
+  /**
+   * Returns a pass that remembers the last result of this pass, so chains that share it only run it
+   * once for the same input.
+   *
+   * <pre>{@code
+   * var nfa = new RegexParser().next(new CharacterSetCollector()).next(new RExpTree2NfaPass());
+   * var cachedNfa = nfa.cached();
+   * cachedNfa.next(new Nfa2DigraphPass()).accept(regex);
+   * cachedNfa.next(new SubsetConstructionPass()).accept(regex); // The regex is not reparsed.
+   * }</pre>
+   *
+   * @see CachedPass
+   */
+  default Pass<In, Out> cached() {
+    return new CachedPass<>(this);
+  }
+
+  /** Returns a pass that feeds its input to every branch and collects their outputs in order. */
+  @SafeVarargs
+  static <In, Out> Pass<In, List<Out>> tee(Pass<In, ? extends Out>... branches) {
+    // The branches are copied, so the varargs array does not escape.
+    var list = new ArrayList<Pass<In, ? extends Out>>(branches.length);
+    for (var branch : branches) {
+      list.add(branch);
+    }
+    return tee(list);
+  }
+
+  /** Returns a pass that feeds its input to every branch and collects their outputs in order. */
+  static <In, Out> Pass<In, List<Out>> tee(List<? extends Pass<In, ? extends Out>> branches) {
+    return (i) -> {
+      var outputs = new ArrayList<Out>(branches.size());
+      for (var branch : branches) {
+        outputs.add(branch.accept(i));
+      }
+      return outputs;
+    };
+  }
 }
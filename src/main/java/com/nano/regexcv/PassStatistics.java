@@ -0,0 +1,286 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv;
+
+import com.nano.regexcv.dfa.Dfa;
+import com.nano.regexcv.nfa.Nfa;
+import com.nano.regexcv.nfa.NfaState;
+import com.nano.regexcv.syntax.tree.RAlternation;
+import com.nano.regexcv.syntax.tree.RCharRange;
+import com.nano.regexcv.syntax.tree.RCharRangeList;
+import com.nano.regexcv.syntax.tree.RCodePointClass;
+import com.nano.regexcv.syntax.tree.RContatenation;
+import com.nano.regexcv.syntax.tree.REmpty;
+import com.nano.regexcv.syntax.tree.ROneOrMore;
+import com.nano.regexcv.syntax.tree.ROptional;
+import com.nano.regexcv.syntax.tree.RSingleCharacter;
+import com.nano.regexcv.syntax.tree.RTreeFolder;
+import com.nano.regexcv.syntax.tree.RTreeTraversal;
+import com.nano.regexcv.syntax.tree.RZeroOrMore;
+import com.nano.regexcv.syntax.tree.RegularExpression;
+import com.nano.regexcv.table.RTreeWithTable;
+import com.nano.regexcv.util.Digraph;
+import com.nano.regexcv.util.Json;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the statistics of the passes that are wrapped by {@link
+ * PassStatistics#instrument(String, Pass)}.
+ *
+ * <p>For each run of a pass, it records the wall time, the bytes allocated by the current thread
+ * (or {@code -1} if the JVM can not measure it) and the size of the output:
+ *
+ * <ul>
+ *   <li>{@link RegularExpression}: the number of nodes.
+ *   <li>{@link RTreeWithTable}: the number of character classes.
+ *   <li>{@link Nfa}, {@link Dfa} and {@link Digraph}: the number of states and edges.
+ *   <li>{@link String}: the length.
+ * </ul>
+ */
+public class PassStatistics {
+
+  public static class Record {
+    protected String name;
+    protected long wallTimeNanos;
+    protected long allocatedBytes;
+    protected LinkedHashMap<String, Long> sizes;
+
+    public Record(String name, long wallTimeNanos, long allocatedBytes, Map<String, Long> sizes) {
+      this.name = name;
+      this.wallTimeNanos = wallTimeNanos;
+      this.allocatedBytes = allocatedBytes;
+      this.sizes = new LinkedHashMap<>(sizes);
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getWallTimeNanos() {
+      return wallTimeNanos;
+    }
+
+    public long getAllocatedBytes() {
+      return allocatedBytes;
+    }
+
+    public Map<String, Long> getSizes() {
+      return Collections.unmodifiableMap(sizes);
+    }
+  }
+
+  private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = getThreadMXBean();
+
+  private static com.sun.management.ThreadMXBean getThreadMXBean() {
+    var bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean threadBean
+        && threadBean.isThreadAllocatedMemorySupported()
+        && threadBean.isThreadAllocatedMemoryEnabled()) {
+      return threadBean;
+    }
+    return null;
+  }
+
+  /** Returns the bytes allocated by the current thread or -1 if it is not supported. */
+  protected static long currentThreadAllocatedBytes() {
+    return THREAD_MX_BEAN != null ? THREAD_MX_BEAN.getCurrentThreadAllocatedBytes() : -1;
+  }
+
+  private final ArrayList<Record> records = new ArrayList<>();
+
+  public <In, Out> Pass<In, Out> instrument(String name, Pass<In, Out> pass) {
+    return new InstrumentedPass<>(name, pass, this);
+  }
+
+  protected synchronized void record(
+      String name, long wallTimeNanos, long allocatedBytes, Object output) {
+    records.add(new Record(name, wallTimeNanos, allocatedBytes, measure(output)));
+  }
+
+  /** Returns the records in the order that the passes finished. */
+  public synchronized List<Record> getRecords() {
+    return new ArrayList<>(records);
+  }
+
+  public synchronized long getTotalWallTimeNanos() {
+    return records.stream().mapToLong(Record::getWallTimeNanos).sum();
+  }
+
+  public synchronized void clear() {
+    records.clear();
+  }
+
+  /**
+   * Returns the statistics in JSON:
+   *
+   * <pre>{@code
+   * {"totalWallTimeNanos": 1200, "passes": [
+   *   {"name": "parse", "wallTimeNanos": 1000, "allocatedBytes": 512, "astNodes": 4},
+   *   {"name": "collect", "wallTimeNanos": 200, "allocatedBytes": 256, "tableClasses": 3}
+   * ]}
+   * }</pre>
+   */
+  public synchronized String toJson() {
+    var json = new StringBuilder();
+    json.append("{\"totalWallTimeNanos\": ").append(getTotalWallTimeNanos());
+    json.append(", \"passes\": [");
+    for (int i = 0; i < records.size(); i++) {
+      var record = records.get(i);
+      json.append(i == 0 ? "\n  " : ",\n  ");
+      json.append("{\"name\": ").append(Json.quote(record.name));
+      json.append(", \"wallTimeNanos\": ").append(record.wallTimeNanos);
+      json.append(", \"allocatedBytes\": ").append(record.allocatedBytes);
+      for (var size : record.sizes.entrySet()) {
+        json.append(", ").append(Json.quote(size.getKey())).append(": ").append(size.getValue());
+      }
+      json.append("}");
+    }
+    return json.append(records.isEmpty() ? "]}" : "\n]}").toString();
+  }
+
+  // Size Metrics
+
+  /**
+   * Returns the size metrics of a pass output, such as {@code astNodes} or {@code nfaStates} and
+   * {@code nfaEdges}. Returns an empty map if the output type is unknown.
+   */
+  public static LinkedHashMap<String, Long> measure(Object output) {
+    var sizes = new LinkedHashMap<String, Long>();
+    if (output instanceof RegularExpression regex) {
+      sizes.put("astNodes", (long) RTreeTraversal.fold(regex, new NodeCounter()));
+    } else if (output instanceof RTreeWithTable treeWithTable) {
+      sizes.put("tableClasses", (long) treeWithTable.table.getTableSize());
+    } else if (output instanceof Nfa nfa) {
+      measureNfa(nfa, sizes);
+    } else if (output instanceof Dfa dfa) {
+      var states = dfa.getAllStates();
+      var edges = 0L;
+      for (var state : states) {
+        for (var successor : state.getAllTransitions()) {
+          edges += successor != null ? 1 : 0;
+        }
+      }
+      sizes.put("dfaStates", (long) states.length);
+      sizes.put("dfaEdges", edges);
+    } else if (output instanceof Digraph digraph) {
+      measureDigraph(digraph, sizes);
+    } else if (output instanceof String str) {
+      sizes.put("chars", (long) str.length());
+    }
+    return sizes;
+  }
+
+  private static void measureNfa(Nfa nfa, Map<String, Long> sizes) {
+    var stack = new LinkedList<NfaState>();
+    var marked = new HashSet<NfaState>();
+    var edges = 0L;
+    stack.push(nfa.getStart());
+    marked.add(nfa.getStart());
+    while (!stack.isEmpty()) {
+      for (var successors : stack.pop().getTransitions()) {
+        if (successors == null) continue;
+        edges += successors.size();
+        successors.stream().filter(marked::add).forEach(stack::push);
+      }
+    }
+    sizes.put("nfaStates", (long) marked.size());
+    sizes.put("nfaEdges", edges);
+  }
+
+  private static void measureDigraph(Digraph digraph, Map<String, Long> sizes) {
+    var stack = new LinkedList<Digraph.Node>();
+    var marked = new HashSet<Digraph.Node>();
+    var edges = 0L;
+    stack.push(digraph.getStart());
+    marked.add(digraph.getStart());
+    while (!stack.isEmpty()) {
+      for (var entry : stack.pop().getAllEdges()) {
+        edges += entry.getValue().size();
+        entry.getValue().stream().filter(marked::add).forEach(stack::push);
+      }
+    }
+    sizes.put("digraphNodes", (long) marked.size());
+    sizes.put("digraphEdges", edges);
+  }
+
+  private static class NodeCounter implements RTreeFolder<Integer> {
+
+    private int sum(List<Integer> counts) {
+      var count = 1;
+      for (var n : counts) {
+        count += n;
+      }
+      return count;
+    }
+
+    @Override
+    public Integer visit(RSingleCharacter node) {
+      return 1;
+    }
+
+    @Override
+    public Integer visit(RCharRange node) {
+      return 1;
+    }
+
+    @Override
+    public Integer visit(RCharRangeList node) {
+      return 1;
+    }
+
+    @Override
+    public Integer visit(RCodePointClass node) {
+      return 1;
+    }
+
+    @Override
+    public Integer visit(RAlternation node, List<Integer> alternatives) {
+      return sum(alternatives);
+    }
+
+    @Override
+    public Integer visit(RContatenation node, List<Integer> elements) {
+      return sum(elements);
+    }
+
+    @Override
+    public Integer visit(REmpty node) {
+      return 1;
+    }
+
+    @Override
+    public Integer visit(ROneOrMore node, Integer quantified) {
+      return 1 + quantified;
+    }
+
+    @Override
+    public Integer visit(ROptional node, Integer quantified) {
+      return 1 + quantified;
+    }
+
+    @Override
+    public Integer visit(RZeroOrMore node, Integer quantified) {
+      return 1 + quantified;
+    }
+  }
+}
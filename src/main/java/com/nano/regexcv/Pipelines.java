@@ -0,0 +1,118 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv;
+
+import com.nano.regexcv.dfa.Dfa;
+import com.nano.regexcv.dfa.DfaMinimizer;
+import com.nano.regexcv.dfa.SubsetConstructionPass;
+import com.nano.regexcv.jfr.FlightRecorderPass;
+import com.nano.regexcv.nfa.Nfa;
+import com.nano.regexcv.nfa.RExpTree2NfaPass;
+import com.nano.regexcv.nfa.Utf8NfaPass;
+import com.nano.regexcv.syntax.RegexParser;
+import com.nano.regexcv.syntax.RegexSimplifier;
+import com.nano.regexcv.syntax.tree.RegularExpression;
+import com.nano.regexcv.table.CharacterSetCollector;
+
+/**
+ * Builds the passes that compile a regex, so every caller runs the same stages in the same order.
+ *
+ * <p>Passes keep state while they are running, so each call returns new passes. Every pass is
+ * wrapped by a {@link StageWrapper} under its stage name:
+ *
+ * <pre>{@code
+ * var dfa = Pipelines.dfa(Pipelines.recorded(regex, null)).accept(regex);
+ * }</pre>
+ */
+public final class Pipelines {
+
+  /** Wraps the pass of a stage, for example to record it. */
+  public interface StageWrapper {
+    <In, Out> Pass<In, Out> wrap(String name, Pass<In, Out> pass);
+  }
+
+  /** Returns the passes unchanged. */
+  public static final StageWrapper NONE =
+      new StageWrapper() {
+        @Override
+        public <In, Out> Pass<In, Out> wrap(String name, Pass<In, Out> pass) {
+          return pass;
+        }
+      };
+
+  /**
+   * Returns a wrapper whose passes emit flight recorder events for the regex and, if {@code stats}
+   * is not null, record their statistics in it.
+   */
+  public static StageWrapper recorded(String regex, PassStatistics stats) {
+    return new StageWrapper() {
+      @Override
+      public <In, Out> Pass<In, Out> wrap(String name, Pass<In, Out> pass) {
+        pass = new FlightRecorderPass<>(name, regex, pass);
+        return stats != null ? stats.instrument(name, pass) : pass;
+      }
+    };
+  }
+
+  /** Returns the pass that parses the regex. */
+  public static Pass<String, RegularExpression> parse(StageWrapper stages) {
+    return stages.wrap("parse", new RegexParser());
+  }
+
+  /** Returns the passes that simplify the parsed regex and construct its NFA. */
+  public static Pass<RegularExpression, Nfa> treeToNfa(StageWrapper stages) {
+    return treeToNfa(stages, new RExpTree2NfaPass());
+  }
+
+  /**
+   * Returns the passes that simplify the parsed regex and construct its NFA over the bytes of
+   * UTF-8. Code point classes are encoded from their ranges, not from their surrogate pairs.
+   *
+   * @param unanchored See {@link Utf8NfaPass#Utf8NfaPass(boolean)}.
+   */
+  public static Pass<RegularExpression, Nfa> treeToUtf8Nfa(
+      StageWrapper stages, boolean unanchored) {
+    return treeToNfa(stages, new RExpTree2NfaPass(true))
+        .next(stages.wrap("utf8-encoding", new Utf8NfaPass(unanchored)));
+  }
+
+  private static Pass<RegularExpression, Nfa> treeToNfa(
+      StageWrapper stages, RExpTree2NfaPass nfaConstruction) {
+    return stages
+        .wrap("simplification", new RegexSimplifier())
+        .next(stages.wrap("character-set-collection", new CharacterSetCollector()))
+        .next(stages.wrap("nfa-construction", nfaConstruction));
+  }
+
+  /** Returns the passes that construct the minimized DFA of an NFA. */
+  public static Pass<Nfa, Dfa> nfaToDfa(StageWrapper stages) {
+    return stages
+        .wrap("subset-construction", new SubsetConstructionPass())
+        .next(stages.wrap("minimization", new DfaMinimizer()));
+  }
+
+  /** Returns the passes that compile a regex into its NFA. */
+  public static Pass<String, Nfa> nfa(StageWrapper stages) {
+    return parse(stages).next(treeToNfa(stages));
+  }
+
+  /** Returns the passes that compile a regex into its minimized DFA. */
+  public static Pass<String, Dfa> dfa(StageWrapper stages) {
+    return nfa(stages).next(nfaToDfa(stages));
+  }
+
+  private Pipelines() {}
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv;
+
+import com.nano.regexcv.dfa.DfaTable;
+import com.nano.regexcv.dfa.HeapDfaTable;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe cache of compiled patterns.
+ *
+ * <p>Concurrent requests for the same uncached pattern are compiled only once: the first thread
+ * runs the compiler and the others wait for its result. Compiled tables are weighed by {@link
+ * DfaTable#sizeInBytes()} and the least recently used ones are evicted when the total weight
+ * exceeds the maximum weight.
+ *
+ * <pre>{@code
+ * var cache = new RegexCache(64 << 20);
+ * var table = cache.get("(\\w+)@(\\w+)");
+ * table.matches("foo@bar"); // true
+ * }</pre>
+ */
+public class RegexCache {
+
+  /**
+   * Compiles the regex into a minimized {@link DfaTable}.
+   *
+   * <p>Passes keep state while they are running, so a new pipeline is created for each regex. Every
+   * pass emits a {@link com.nano.regexcv.jfr.PassEvent} while the flight recorder records it.
+   */
+  public static DfaTable compile(String regex) {
+    return Pipelines.dfa(Pipelines.recorded(regex, null)).next(HeapDfaTable::of).accept(regex);
+  }
+
+  private final long maximumWeight;
+  private final Pass<String, DfaTable> compiler;
+
+  /** Guarded by itself. It is in access order, so the eldest entry is the least recently used. */
+  private final LinkedHashMap<String, DfaTable> entries;
+
+  private final ConcurrentHashMap<String, CompletableFuture<DfaTable>> loading;
+  private long weight;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong loadCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  public RegexCache(long maximumWeight) {
+    this(maximumWeight, RegexCache::compile);
+  }
+
+  /**
+   * @param maximumWeight The maximum total size in bytes of the cached tables.
+   * @param compiler The pass that compiles a regex. It must be safe to run it concurrently.
+   */
+  public RegexCache(long maximumWeight, Pass<String, DfaTable> compiler) {
+    if (maximumWeight < 0) {
+      throw new IllegalArgumentException("Illegal maximum weight: " + maximumWeight);
+    }
+    this.maximumWeight = maximumWeight;
+    this.compiler = compiler;
+    this.entries = new LinkedHashMap<>(16, .75f, true);
+    this.loading = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Returns the compiled table of the regex, compiling it if it is not cached.
+   *
+   * @throws com.nano.regexcv.syntax.RegexSyntaxErrorException if the regex is invalid.
+   */
+  public DfaTable get(String regex) {
+    var table = getIfPresent(regex);
+    if (table != null) {
+      hitCount.incrementAndGet();
+      return table;
+    }
+    missCount.incrementAndGet();
+
+    var future = new CompletableFuture<DfaTable>();
+    var loadingFuture = loading.putIfAbsent(regex, future);
+    if (loadingFuture != null) {
+      return join(loadingFuture);
+    }
+    try {
+      // Another thread may have finished loading it between the lookup and the claim.
+      table = getIfPresent(regex);
+      if (table == null) {
+        loadCount.incrementAndGet();
+        table = compiler.accept(regex);
+        put(regex, table);
+      }
+      future.complete(table);
+      return table;
+    } catch (RuntimeException | Error e) {
+      future.completeExceptionally(e);
+      throw e;
+    } finally {
+      loading.remove(regex, future);
+    }
+  }
+
+  private static DfaTable join(CompletableFuture<DfaTable> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      if (e.getCause() instanceof Error cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  /** Returns the cached table of the regex or null. This does not affect the statistics. */
+  public DfaTable getIfPresent(String regex) {
+    synchronized (entries) {
+      return entries.get(regex);
+    }
+  }
+
+  private void put(String regex, DfaTable table) {
+    var tableWeight = table.sizeInBytes();
+    if (tableWeight > maximumWeight) {
+      return;
+    }
+    synchronized (entries) {
+      var old = entries.put(regex, table);
+      if (old != null) {
+        weight -= old.sizeInBytes();
+      }
+      weight += tableWeight;
+      var iter = entries.values().iterator();
+      while (weight > maximumWeight && iter.hasNext()) {
+        weight -= iter.next().sizeInBytes();
+        iter.remove();
+        evictionCount.incrementAndGet();
+      }
+    }
+  }
+
+  public void invalidateAll() {
+    synchronized (entries) {
+      entries.clear();
+      weight = 0;
+    }
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /** Returns the total size in bytes of the cached tables. */
+  public long getWeight() {
+    synchronized (entries) {
+      return weight;
+    }
+  }
+
+  public long getMaximumWeight() {
+    return maximumWeight;
+  }
+
+  /** Returns the number of lookups that found a cached table. */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * Returns the number of lookups that did not find a cached table, including the ones that waited
+   * for another thread to compile it.
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /** Returns the number of times the compiler has been run. */
+  public long getLoadCount() {
+    return loadCount.get();
+  }
+
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "RegexCache{size=%d, weight=%d, hits=%d, misses=%d, loads=%d, evictions=%d}",
+        size(), getWeight(), getHitCount(), getMissCount(), getLoadCount(), getEvictionCount());
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.batch;
+
+import com.nano.regexcv.syntax.RegexSyntaxErrorException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+/**
+ * The {@code batch} subcommand that compiles the regexes of a file, one per line, with a {@link
+ * BatchCompiler}. Empty lines are skipped and the outputs are named by the line numbers.
+ */
+public class BatchCommand {
+
+  public interface Msg {
+    String OUTPUT_DESCRIPTION = "The directory of the output files";
+    String FORMAT_DESCRIPTION = "The output format: dot, stats or dfa (default: dot)";
+    String JOBS_DESCRIPTION = "The number of regexes compiled in parallel (default: CPU count)";
+
+    String CMD_USAGE = "regexcv batch [OPTIONS] -o <directory> [<file of regexes> | -]\n\n";
+
+    String ERROR_TOO_MANY_ARGS = "Error: regexcv batch accepts at most one file of regexes";
+  }
+
+  public static final int EXIT_SUCCESS = 0;
+  public static final int EXIT_IO_ERROR = 5;
+  public static final int EXIT_SYNTAX_ERROR = 8;
+  public static final int EXIT_ILLEGAL_ARGS = 22;
+
+  /**
+   * Runs the command and returns the exit status: {@code 0} if every regex is compiled, {@code 8}
+   * if any regex is invalid and {@code 5} if any file can not be read or written.
+   */
+  public static int run(String... args) {
+    var options = defineOptions();
+    CommandLine cl;
+    BatchCompiler.Format format;
+    int jobs;
+    try {
+      cl = new DefaultParser().parse(options, args);
+      if (cl.getArgs().length > 1) {
+        throw new ParseException(Msg.ERROR_TOO_MANY_ARGS);
+      }
+      format = parseFormat(cl.getOptionValue("f", "dot"));
+      jobs = parseJobs(cl.getOptionValue("j"));
+    } catch (ParseException e) {
+      System.err.println(e.getMessage() + "\n");
+      printUsage(options);
+      return EXIT_ILLEGAL_ARGS;
+    }
+
+    var input = cl.getArgs().length == 0 ? "-" : cl.getArgs()[0];
+    var indices = new ArrayList<Integer>();
+    var regexes = new ArrayList<String>();
+    try (var reader =
+        input.equals("-")
+            ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+            : Files.newBufferedReader(Path.of(input))) {
+      String line;
+      for (int lineNo = 1; (line = reader.readLine()) != null; lineNo++) {
+        if (!line.isEmpty()) {
+          indices.add(lineNo);
+          regexes.add(line);
+        }
+      }
+    } catch (IOException e) {
+      System.err.printf("regexcv batch: %s: %s\n", input, e.getMessage());
+      return EXIT_IO_ERROR;
+    }
+
+    var pool = jobs > 0 ? new ForkJoinPool(jobs) : ForkJoinPool.commonPool();
+    try {
+      var compiler = new BatchCompiler(format, Path.of(cl.getOptionValue("o")), pool);
+      var status = EXIT_SUCCESS;
+      for (var result : compiler.compile(indices, regexes)) {
+        if (result.error() == null) {
+          continue;
+        }
+        System.err.printf(
+            "regexcv batch: line %d: %s\n", result.index(), result.error().getMessage());
+        if (result.error() instanceof RegexSyntaxErrorException) {
+          status = status == EXIT_SUCCESS ? EXIT_SYNTAX_ERROR : status;
+        } else {
+          status = EXIT_IO_ERROR;
+        }
+      }
+      return status;
+    } catch (IOException e) {
+      System.err.println("regexcv batch: " + e.getMessage());
+      return EXIT_IO_ERROR;
+    } finally {
+      if (pool != ForkJoinPool.commonPool()) {
+        pool.shutdown();
+      }
+    }
+  }
+
+  private static Options defineOptions() {
+    Options options = new Options();
+    options.addOption(
+        Option.builder("o")
+            .longOpt("output")
+            .hasArg()
+            .argName("directory")
+            .required()
+            .desc(Msg.OUTPUT_DESCRIPTION)
+            .build());
+    options.addOption(
+        Option.builder("f")
+            .longOpt("format")
+            .hasArg()
+            .argName("format")
+            .desc(Msg.FORMAT_DESCRIPTION)
+            .build());
+    options.addOption(
+        Option.builder("j")
+            .longOpt("jobs")
+            .hasArg()
+            .argName("n")
+            .desc(Msg.JOBS_DESCRIPTION)
+            .build());
+    return options;
+  }
+
+  private static BatchCompiler.Format parseFormat(String format) throws ParseException {
+    try {
+      return BatchCompiler.Format.valueOf(format.toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new ParseException("Error: unknown format: " + format);
+    }
+  }
+
+  /** Returns the number of jobs or 0 if the common pool should be used. */
+  private static int parseJobs(String jobs) throws ParseException {
+    if (jobs == null) {
+      return 0;
+    }
+    try {
+      var n = Integer.parseInt(jobs);
+      if (n > 0) {
+        return n;
+      }
+    } catch (NumberFormatException e) {
+      // Falls through.
+    }
+    throw new ParseException("Error: illegal number of jobs: " + jobs);
+  }
+
+  private static void printUsage(Options options) {
+    HelpFormatter hf = new HelpFormatter();
+    hf.setLongOptPrefix(" --");
+    hf.setOptionComparator(null);
+    hf.printHelp(Msg.CMD_USAGE, options);
+  }
+}
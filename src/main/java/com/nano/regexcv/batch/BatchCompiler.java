@@ -0,0 +1,149 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.batch;
+
+import com.nano.regexcv.PassStatistics;
+import com.nano.regexcv.Pipelines;
+import com.nano.regexcv.dfa.Dfa2DigraphPass;
+import com.nano.regexcv.dfa.OffHeapDfaTable;
+import com.nano.regexcv.util.DigraphDotGenerator;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Compiles many regexes in parallel and writes an output file for each of them.
+ *
+ * <p>Every regex runs through its own pipeline of passes on a {@link ForkJoinPool}, so a library of
+ * patterns is compiled by one JVM instead of one launch per pattern. The output of the regex with
+ * the index {@code i} is written to {@code <i>.<extension>} in the output directory, where the
+ * index is usually the line number of the regex.
+ *
+ * <pre>{@code
+ * var compiler = new BatchCompiler(BatchCompiler.Format.DFA, Path.of("out"));
+ * for (var result : compiler.compile(List.of("\\d+", "(\\w+)@(\\w+)"))) {
+ *   System.out.println(result.output()); // out/1.dfa, out/2.dfa
+ * }
+ * }</pre>
+ */
+public class BatchCompiler {
+
+  public enum Format {
+    /** The DOT digraph of the minimized DFA. */
+    DOT("dot"),
+    /** The {@link PassStatistics} of the pipeline in JSON. */
+    STATS("json"),
+    /** The minimized DFA in the table format of {@link OffHeapDfaTable}. */
+    DFA("dfa");
+
+    private final String extension;
+
+    Format(String extension) {
+      this.extension = extension;
+    }
+
+    public String getExtension() {
+      return extension;
+    }
+  }
+
+  /**
+   * The result of a regex. The output is the written file, or null if the regex failed with the
+   * error.
+   */
+  public record Result(int index, String regex, Path output, Exception error) {}
+
+  private final Format format;
+  private final Path outputDirectory;
+  private final ForkJoinPool pool;
+
+  public BatchCompiler(Format format, Path outputDirectory) {
+    this(format, outputDirectory, ForkJoinPool.commonPool());
+  }
+
+  public BatchCompiler(Format format, Path outputDirectory, ForkJoinPool pool) {
+    this.format = format;
+    this.outputDirectory = outputDirectory;
+    this.pool = pool;
+  }
+
+  /** Compiles the regexes, which are indexed from {@code 1}. */
+  public List<Result> compile(List<String> regexes) throws IOException {
+    var indices = new ArrayList<Integer>(regexes.size());
+    for (int i = 0; i < regexes.size(); i++) {
+      indices.add(i + 1);
+    }
+    return compile(indices, regexes);
+  }
+
+  /**
+   * Compiles the regexes and returns their results in the same order. A regex that is invalid or
+   * whose output can not be written does not stop the others.
+   *
+   * @param indices The indices of the regexes that name their output files, they must be unique.
+   */
+  public List<Result> compile(List<Integer> indices, List<String> regexes) throws IOException {
+    if (indices.size() != regexes.size()) {
+      throw new IllegalArgumentException(
+          String.format("indices: %d, regexes: %d", indices.size(), regexes.size()));
+    }
+    Files.createDirectories(outputDirectory);
+    var tasks = new ArrayList<ForkJoinTask<Result>>(regexes.size());
+    for (int i = 0; i < regexes.size(); i++) {
+      var index = indices.get(i);
+      var regex = regexes.get(i);
+      tasks.add(pool.submit(() -> compile(index, regex)));
+    }
+    var results = new ArrayList<Result>(tasks.size());
+    for (var task : tasks) {
+      results.add(task.join());
+    }
+    return results;
+  }
+
+  private Result compile(int index, String regex) {
+    var output = outputDirectory.resolve(index + "." + format.getExtension());
+    try {
+      switch (format) {
+        case DOT -> {
+          var stages = Pipelines.recorded(regex, null);
+          var dot =
+              Pipelines.dfa(stages)
+                  .next(stages.wrap("dfa-digraph", new Dfa2DigraphPass()))
+                  .next(stages.wrap("dot-generation", new DigraphDotGenerator()))
+                  .accept(regex);
+          Files.writeString(output, dot);
+        }
+        case STATS -> {
+          var stats = new PassStatistics();
+          Pipelines.dfa(Pipelines.recorded(regex, stats)).accept(regex);
+          Files.writeString(output, stats.toJson());
+        }
+        case DFA -> {
+          var dfa = Pipelines.dfa(Pipelines.recorded(regex, null)).accept(regex);
+          OffHeapDfaTable.create(dfa, output).close();
+        }
+      }
+      return new Result(index, regex, output, null);
+    } catch (RuntimeException | IOException e) {
+      return new Result(index, regex, null, e);
+    }
+  }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.dfa;
+
+import com.nano.regexcv.table.ICharsNumTable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An Aho–Corasick automaton over the bytes of UTF-8 that finds any of a set of literals.
+ *
+ * <p>It is a {@link DfaTable} that accepts any input ending with one of the literals, like the
+ * search tables of {@link com.nano.regexcv.grep.Grep}, so it can be used wherever such a table is
+ * used. It is built in time linear in the total length of the literals instead of compiling the
+ * alternation through the NFA, subset construction and minimization.
+ *
+ * <p>States are numbered in breadth-first order, and the shallow states, which most bytes of a text
+ * visit, have dense rows whose failure links are flattened into complete transitions. The deeper
+ * states, beyond a budget of dense entries, only keep their goto transitions and failure link. The
+ * failure links lead to shallower states, so a step follows them until it reaches a state with the
+ * transition or a dense state.
+ *
+ * <p>Bytes that do not occur in any literal share the class {@code 1}, the other bytes have a class
+ * of their own.
+ */
+public class AhoCorasickTable extends DfaTable {
+
+  /** The default maximum number of entries of the dense rows. */
+  public static final int DEFAULT_DENSE_ENTRIES = 1 << 20;
+
+  /**
+   * Builds the automaton of the UTF-8 encodings of the literals. A literal that contains an
+   * unpaired surrogate can not be encoded and never matches, like in a UTF-8 DFA.
+   */
+  public static AhoCorasickTable of(List<String> literals) {
+    var words = new ArrayList<byte[]>(literals.size());
+    for (var literal : literals) {
+      if (isWellFormed(literal)) {
+        words.add(literal.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    return of(words, DEFAULT_DENSE_ENTRIES);
+  }
+
+  private static boolean isWellFormed(String str) {
+    for (int i = 0; i < str.length(); i++) {
+      var ch = str.charAt(i);
+      if (Character.isHighSurrogate(ch)
+          && i + 1 < str.length()
+          && Character.isLowSurrogate(str.charAt(i + 1))) {
+        i++;
+      } else if (Character.isSurrogate(ch)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Builds the automaton of the byte strings.
+   *
+   * @param denseEntries The maximum number of entries of the dense rows. The start state always has
+   *     a dense row.
+   */
+  public static AhoCorasickTable of(List<byte[]> words, int denseEntries) {
+    var byteClasses = new int[256];
+    for (var word : words) {
+      for (var b : word) {
+        byteClasses[b & 0xFF] = 1;
+      }
+    }
+    var classCount = 1;
+    for (int b = 0; b < byteClasses.length; b++) {
+      byteClasses[b] = byteClasses[b] != 0 ? ++classCount : 1;
+    }
+    return new Builder(byteClasses, classCount).build(words, denseEntries);
+  }
+
+  /** Builds a trie with sibling lists and numbers its states in breadth-first order. */
+  private static class Builder {
+    private final int[] byteClasses;
+    private final int classCount;
+
+    // The trie, states are numbered in the order they are created.
+    private int stateCount = 1;
+    private int[] firstChild = new int[16];
+    private int[] nextSibling = new int[16];
+    private int[] labels = new int[16];
+    private boolean[] ends = new boolean[16];
+
+    public Builder(int[] byteClasses, int classCount) {
+      this.byteClasses = byteClasses;
+      this.classCount = classCount;
+      firstChild[0] = -1;
+    }
+
+    private int child(int state, int label) {
+      for (var c = firstChild[state]; c >= 0; c = nextSibling[c]) {
+        if (labels[c] == label) {
+          return c;
+        }
+      }
+      return -1;
+    }
+
+    private int addChild(int state, int label) {
+      if (stateCount == labels.length) {
+        var capacity = stateCount * 2;
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        labels = Arrays.copyOf(labels, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+      }
+      var c = stateCount++;
+      firstChild[c] = -1;
+      labels[c] = label;
+      nextSibling[c] = firstChild[state];
+      firstChild[state] = c;
+      return c;
+    }
+
+    public AhoCorasickTable build(List<byte[]> words, int denseEntries) {
+      for (var word : words) {
+        var state = 0;
+        for (var b : word) {
+          var label = byteClasses[b & 0xFF];
+          var next = child(state, label);
+          state = next >= 0 ? next : addChild(state, label);
+        }
+        ends[state] = true;
+      }
+
+      // Renumber the states in breadth-first order.
+      var order = new int[stateCount];
+      var numbers = new int[stateCount];
+      var tail = 1;
+      for (int head = 0; head < tail; head++) {
+        for (var c = firstChild[order[head]]; c >= 0; c = nextSibling[c]) {
+          numbers[c] = tail;
+          order[tail++] = c;
+        }
+      }
+
+      var denseStates = Math.max(1, Math.min(stateCount, denseEntries / classCount));
+      var table = new AhoCorasickTable(byteClasses, classCount, stateCount, denseStates);
+      var sparseEdges = 0;
+      for (int s = denseStates; s < stateCount; s++) {
+        for (var c = firstChild[order[s]]; c >= 0; c = nextSibling[c]) {
+          sparseEdges++;
+        }
+      }
+      table.sparseLabels = new int[sparseEdges];
+      table.sparseTargets = new int[sparseEdges];
+
+      // The failure link of a state only depends on shallower states, which come first.
+      var edge = 0;
+      var goTo = new int[classCount];
+      for (int s = 0; s < stateCount; s++) {
+        var node = order[s];
+        var fail = table.fail[s];
+        if (s >= denseStates) {
+          // It must be set before any transition of a shallower sparse state is looked up.
+          table.sparseStarts[s - denseStates] = edge;
+        }
+        table.finals[s] = ends[node] || (s != 0 && table.finals[fail]);
+        Arrays.fill(goTo, -1);
+        for (var c = firstChild[node]; c >= 0; c = nextSibling[c]) {
+          var target = numbers[c];
+          goTo[labels[c] - 1] = target;
+          // The failure link of the child is the transition of this state's failure link.
+          table.fail[target] = s == 0 ? 0 : table.nextState(fail, labels[c]);
+        }
+        if (s < denseStates) {
+          for (int i = 0; i < classCount; i++) {
+            table.dense[s * classCount + i] =
+                goTo[i] >= 0 ? goTo[i] : s == 0 ? 0 : table.nextState(fail, i + 1);
+          }
+        } else {
+          for (int i = 0; i < classCount; i++) {
+            if (goTo[i] >= 0) {
+              table.sparseLabels[edge] = i + 1;
+              table.sparseTargets[edge] = goTo[i];
+              edge++;
+            }
+          }
+        }
+      }
+      table.sparseStarts[stateCount - denseStates] = edge;
+      return table;
+    }
+  }
+
+  private final int[] byteClasses;
+  private final int classCount;
+  private final int denseStates;
+  private final int[] dense;
+  private final boolean[] finals;
+  private final int[] fail;
+
+  /** The edges of the sparse state {@code s} are {@code [sparseStarts[s - denseStates], ...)}. */
+  private final int[] sparseStarts;
+
+  private int[] sparseLabels;
+  private int[] sparseTargets;
+
+  private AhoCorasickTable(int[] byteClasses, int classCount, int stateCount, int denseStates) {
+    this.byteClasses = byteClasses;
+    this.classCount = classCount;
+    this.denseStates = denseStates;
+    this.dense = new int[denseStates * classCount];
+    this.finals = new boolean[stateCount];
+    this.fail = new int[stateCount];
+    this.sparseStarts = new int[stateCount - denseStates + 1];
+  }
+
+  @Override
+  public int getStateCount() {
+    return finals.length;
+  }
+
+  @Override
+  public int getClassCount() {
+    return classCount;
+  }
+
+  @Override
+  public int getStartState() {
+    return 0;
+  }
+
+  @Override
+  public boolean isFinalState(int state) {
+    return finals[state];
+  }
+
+  /** Returns the number of states that have a dense row. */
+  public int getDenseStateCount() {
+    return denseStates;
+  }
+
+  @Override
+  public int classOf(char ch) {
+    return ch < byteClasses.length ? byteClasses[ch] : ICharsNumTable.INVALID_CHAR_NUM;
+  }
+
+  @Override
+  public int nextState(int state, int charClass) {
+    while (state >= denseStates) {
+      var end = sparseStarts[state - denseStates + 1];
+      for (int i = sparseStarts[state - denseStates]; i < end; i++) {
+        if (sparseLabels[i] == charClass) {
+          return sparseTargets[i];
+        }
+      }
+      state = fail[state];
+    }
+    return dense[state * classCount + charClass - 1];
+  }
+
+  @Override
+  public long sizeInBytes() {
+    return 4L
+            * (byteClasses.length
+                + dense.length
+                + fail.length
+                + sparseStarts.length
+                + sparseLabels.length
+                + sparseTargets.length)
+        + finals.length;
+  }
+}
@@ -123,18 +123,24 @@ public class DfaMinimizer implements Pass<Dfa, Dfa> {
   private static boolean partition(GroupList groupList, Group group, DfaState[] dstates, int in) {
     int size = dstates.length;
     DfaState firstDstate = dstates[0];
-    Group newGroup = null;
+    // The states are moved after all of them are compared, because moving a state changes the
+    // group of the states whose transitions lead to it.
+    ArrayList<DfaState> moved = new ArrayList<>();
     for (int i = 1; i < size; i++) {
       DfaState s = dstates[i];
       if (!groupList.equals(firstDstate.getState(in), s.getState(in))) {
-        if (newGroup == null) {
-          newGroup = new Group();
-          groupList.addGroup(newGroup);
-        }
-        groupList.move(group, newGroup, s);
+        moved.add(s);
       }
     }
-    return newGroup != null;
+    if (moved.isEmpty()) {
+      return false;
+    }
+    Group newGroup = new Group();
+    groupList.addGroup(newGroup);
+    for (DfaState s : moved) {
+      groupList.move(group, newGroup, s);
+    }
+    return true;
   }
 
   private static GroupList initGroups(DfaState[] table) {
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.dfa;
+
+import com.nano.regexcv.table.ICharsNumTable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Objects;
+
+/**
+ * A matcher that accepts its input in chunks and only keeps the current DFA state between them, so
+ * inputs of any length can be matched without buffering them.
+ *
+ * <pre>{@code
+ * var matcher = new DfaStreamMatcher(table);
+ * while ((n = reader.read(buf)) != -1) {
+ *   matcher.feed(buf, 0, n);
+ * }
+ * var matched = matcher.end();
+ * }</pre>
+ *
+ * <p>This class is not thread-safe.
+ */
+public class DfaStreamMatcher {
+
+  private static final int READ_BUFFER_SIZE = 8192;
+
+  private final DfaTable table;
+  private int state;
+  private long position;
+
+  public DfaStreamMatcher(DfaTable table) {
+    this.table = table;
+    this.state = table.getStartState();
+  }
+
+  /** Matches the whole content of the reader. The reader is not closed. */
+  public static boolean matches(DfaTable table, Reader reader) throws IOException {
+    var matcher = new DfaStreamMatcher(table);
+    var buf = new char[READ_BUFFER_SIZE];
+    int n;
+    while (!matcher.isDead() && (n = reader.read(buf)) != -1) {
+      matcher.feed(buf, 0, n);
+    }
+    return matcher.end();
+  }
+
+  public DfaStreamMatcher feed(char[] chars) {
+    return feed(chars, 0, chars.length);
+  }
+
+  /** Feeds the next {@code len} characters of the input. */
+  public DfaStreamMatcher feed(char[] chars, int off, int len) {
+    Objects.checkFromIndexSize(off, len, chars.length);
+    position += len;
+    var state = this.state;
+    var end = off + len;
+    for (int i = off; i < end && state != DfaTable.DEAD_STATE; i++) {
+      state = step(state, chars[i]);
+    }
+    this.state = state;
+    return this;
+  }
+
+  /** Feeds the remaining characters of the buffer and moves its position to its limit. */
+  public DfaStreamMatcher feed(CharBuffer buffer) {
+    if (buffer.hasArray()) {
+      feed(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+      buffer.position(buffer.limit());
+      return this;
+    }
+    position += buffer.remaining();
+    var state = this.state;
+    while (buffer.hasRemaining() && state != DfaTable.DEAD_STATE) {
+      state = step(state, buffer.get());
+    }
+    buffer.position(buffer.limit());
+    this.state = state;
+    return this;
+  }
+
+  public DfaStreamMatcher feed(CharSequence chars) {
+    position += chars.length();
+    var state = this.state;
+    var len = chars.length();
+    for (int i = 0; i < len && state != DfaTable.DEAD_STATE; i++) {
+      state = step(state, chars.charAt(i));
+    }
+    this.state = state;
+    return this;
+  }
+
+  private int step(int state, char ch) {
+    var charClass = table.classOf(ch);
+    if (charClass == ICharsNumTable.INVALID_CHAR_NUM) {
+      return DfaTable.DEAD_STATE;
+    }
+    return table.nextState(state, charClass);
+  }
+
+  /**
+   * Returns true if no more input can make the fed input match. The rest of the input can be
+   * skipped in this case.
+   */
+  public boolean isDead() {
+    return state == DfaTable.DEAD_STATE;
+  }
+
+  /** Returns true if the input that has been fed so far matches. */
+  public boolean isMatched() {
+    return state != DfaTable.DEAD_STATE && table.isFinalState(state);
+  }
+
+  /** Returns the number of characters that have been fed. */
+  public long getPosition() {
+    return position;
+  }
+
+  /**
+   * Ends the input and returns true if the whole input matches. The matcher is reset, so it can be
+   * used for the next input.
+   */
+  public boolean end() {
+    var matched = isMatched();
+    reset();
+    return matched;
+  }
+
+  public void reset() {
+    this.state = table.getStartState();
+    this.position = 0;
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.dfa;
+
+import com.nano.regexcv.table.ICharsNumTable;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * A {@code DfaTable} is a compiled form of a {@link Dfa}: states are numbered from {@code 0} and
+ * transitions are stored in a flat {@code states * classes} table instead of an object graph.
+ *
+ * <p>Character classes use the same numbers as the {@link ICharsNumTable} of the DFA, so the class
+ * {@code 1} is the first range of the table. A missing transition is represented by {@link
+ * DfaTable#DEAD_STATE}.
+ */
+public abstract class DfaTable {
+
+  public static final int DEAD_STATE = -1;
+
+  /** Characters below this bound are mapped to their class by a direct lookup. */
+  protected static final int DIRECT_MAP_SIZE = 256;
+
+  /** The number of inputs that {@link DfaTable#matchAll} steps together. */
+  public static final int INTERLEAVED_LANES = 4;
+
+  /** The size in bytes of the smallest table whose inputs are interleaved by {@code matchAll}. */
+  public static final long INTERLEAVING_THRESHOLD = 256 << 10;
+
+  public abstract int getStateCount();
+
+  public abstract int getClassCount();
+
+  public abstract int getStartState();
+
+  public abstract boolean isFinalState(int state);
+
+  /**
+   * Returns the class number of the given character or {@link ICharsNumTable#INVALID_CHAR_NUM} if
+   * no class contains it.
+   */
+  public abstract int classOf(char ch);
+
+  /**
+   * Returns the successor of the state on the given class or {@link DfaTable#DEAD_STATE} if there
+   * is no transition.
+   *
+   * @param charClass A class number in {@code [1, getClassCount()]}.
+   */
+  public abstract int nextState(int state, int charClass);
+
+  /** Returns the approximate number of bytes used by the tables. */
+  public abstract long sizeInBytes();
+
+  /** Returns true if the whole input is accepted by this DFA. */
+  public boolean matches(CharSequence input) {
+    var state = getStartState();
+    var len = input.length();
+    for (int i = 0; i < len; i++) {
+      var charClass = classOf(input.charAt(i));
+      if (charClass == ICharsNumTable.INVALID_CHAR_NUM) {
+        return false;
+      }
+      state = nextState(state, charClass);
+      if (state == DEAD_STATE) {
+        return false;
+      }
+    }
+    return isFinalState(state);
+  }
+
+  /**
+   * Matches all inputs and stores the results in {@code out}, so {@code out[i]} equals {@code
+   * matches(inputs[i])}.
+   *
+   * <p>{@link DfaTable#INTERLEAVED_LANES} inputs are stepped together, one character of each input
+   * per iteration, and a lane takes the next input as soon as its input has ended or died. The
+   * table lookups of different lanes do not depend on each other, so the CPU can overlap them
+   * instead of waiting for each one in turn. This only pays off when the tables do not fit in the
+   * CPU caches, so the inputs of a table smaller than {@link DfaTable#INTERLEAVING_THRESHOLD} bytes
+   * are matched one at a time.
+   */
+  public void matchAll(CharSequence[] inputs, boolean[] out) {
+    if (out.length < inputs.length) {
+      throw new IllegalArgumentException(
+          String.format("out: %d, inputs: %d", out.length, inputs.length));
+    }
+    if (sizeInBytes() < INTERLEAVING_THRESHOLD) {
+      for (int i = 0; i < inputs.length; i++) {
+        out[i] = matches(inputs[i]);
+      }
+    } else {
+      matchInterleaved(inputs, out);
+    }
+  }
+
+  private void matchInterleaved(CharSequence[] inputs, boolean[] out) {
+    var laneInputs = new CharSequence[INTERLEAVED_LANES];
+    var laneIndices = new int[INTERLEAVED_LANES];
+    var lanePositions = new int[INTERLEAVED_LANES];
+    var laneStates = new int[INTERLEAVED_LANES];
+    var next = 0;
+    var active = 0;
+    for (; active < INTERLEAVED_LANES && next < inputs.length; active++, next++) {
+      laneInputs[active] = inputs[next];
+      laneIndices[active] = next;
+      laneStates[active] = getStartState();
+    }
+    Arrays.fill(laneIndices, active, INTERLEAVED_LANES, -1);
+
+    while (active > 0) {
+      for (int lane = 0; lane < INTERLEAVED_LANES; lane++) {
+        var index = laneIndices[lane];
+        if (index < 0) {
+          continue;
+        }
+        var input = laneInputs[lane];
+        var position = lanePositions[lane];
+        var state = laneStates[lane];
+        if (position < input.length()) {
+          var charClass = classOf(input.charAt(position));
+          state =
+              charClass == ICharsNumTable.INVALID_CHAR_NUM
+                  ? DEAD_STATE
+                  : nextState(state, charClass);
+          if (state != DEAD_STATE) {
+            lanePositions[lane] = position + 1;
+            laneStates[lane] = state;
+            continue;
+          }
+        }
+        // The input has ended or died, so the lane takes the next one.
+        out[index] = state != DEAD_STATE && isFinalState(state);
+        lanePositions[lane] = 0;
+        laneStates[lane] = getStartState();
+        if (next < inputs.length) {
+          laneInputs[lane] = inputs[next];
+          laneIndices[lane] = next++;
+        } else {
+          laneIndices[lane] = -1;
+          active--;
+        }
+      }
+    }
+  }
+
+  /** Returns a matcher that accepts the input of this DFA in chunks. */
+  public DfaStreamMatcher newStreamMatcher() {
+    return new DfaStreamMatcher(this);
+  }
+
+  /**
+   * Numbers the given states by their index. {@link Dfa#getAllStates()} always puts the start state
+   * first, so it is numbered {@code 0}.
+   */
+  protected static HashMap<DfaState, Integer> numberStates(DfaState[] states) {
+    var numbers = new HashMap<DfaState, Integer>(states.length * 2);
+    for (int i = 0; i < states.length; i++) {
+      numbers.put(states[i], i);
+    }
+    return numbers;
+  }
+
+  /** Encodes a class range into an int so that it can be stored in a flat table. */
+  protected static int encodeRange(char from, char to) {
+    return from << 16 | to;
+  }
+
+  protected static char rangeFrom(int range) {
+    return (char) (range >>> 16);
+  }
+
+  protected static char rangeTo(int range) {
+    return (char) range;
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.dfa;
+
+import com.nano.regexcv.table.ICharsNumTable;
+
+/** A {@link DfaTable} whose tables are plain java arrays. */
+public class HeapDfaTable extends DfaTable {
+
+  public static HeapDfaTable of(Dfa dfa) {
+    var table = dfa.getCharsNumTable();
+    var states = dfa.getAllStates();
+    var numbers = numberStates(states);
+    var classCount = table.getTableSize();
+
+    var ranges = new int[classCount];
+    for (int i = 0; i < classCount; i++) {
+      var range = table.getCharRangeOfNum(i + 1);
+      ranges[i] = encodeRange(range.from, range.to);
+    }
+    var directMap = new int[DIRECT_MAP_SIZE];
+    for (int ch = 0; ch < DIRECT_MAP_SIZE; ch++) {
+      directMap[ch] = table.queryNumOfInputChar((char) ch);
+    }
+
+    var finals = new boolean[states.length];
+    var transitions = new int[Math.multiplyExact(states.length, classCount)];
+    for (int s = 0; s < states.length; s++) {
+      finals[s] = states[s].isFinalState();
+      var successors = states[s].getAllTransitions();
+      for (int c = 0; c < classCount; c++) {
+        var successor = successors[c];
+        transitions[s * classCount + c] = successor == null ? DEAD_STATE : numbers.get(successor);
+      }
+    }
+    return new HeapDfaTable(classCount, ranges, directMap, finals, transitions);
+  }
+
+  private final int classCount;
+  private final int[] ranges;
+  private final int[] directMap;
+  private final boolean[] finals;
+  private final int[] transitions;
+
+  protected HeapDfaTable(
+      int classCount, int[] ranges, int[] directMap, boolean[] finals, int[] transitions) {
+    this.classCount = classCount;
+    this.ranges = ranges;
+    this.directMap = directMap;
+    this.finals = finals;
+    this.transitions = transitions;
+  }
+
+  @Override
+  public int getStateCount() {
+    return finals.length;
+  }
+
+  @Override
+  public int getClassCount() {
+    return classCount;
+  }
+
+  @Override
+  public int getStartState() {
+    return 0;
+  }
+
+  @Override
+  public boolean isFinalState(int state) {
+    return finals[state];
+  }
+
+  @Override
+  public int classOf(char ch) {
+    if (ch < DIRECT_MAP_SIZE) {
+      return directMap[ch];
+    }
+    var l = 0;
+    var r = ranges.length - 1;
+    while (r >= l) {
+      var mid = l + ((r - l) >> 1);
+      var range = ranges[mid];
+      if (ch < rangeFrom(range)) {
+        r = mid - 1;
+      } else if (ch > rangeTo(range)) {
+        l = mid + 1;
+      } else {
+        return mid + 1;
+      }
+    }
+    return ICharsNumTable.INVALID_CHAR_NUM;
+  }
+
+  @Override
+  public int nextState(int state, int charClass) {
+    return transitions[state * classCount + charClass - 1];
+  }
+
+  @Override
+  public long sizeInBytes() {
+    return 4L * (ranges.length + directMap.length + transitions.length) + finals.length;
+  }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.dfa;
+
+import com.nano.regexcv.table.ICharsNumTable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link DfaTable} whose tables live outside of the java heap, so large DFAs are not scanned by
+ * the garbage collector.
+ *
+ * <p>The tables are stored in a direct or memory-mapped buffer with the following layout (all
+ * values are little-endian ints):
+ *
+ * <pre>{@code
+ * header:      MAGIC, VERSION, stateCount, classCount
+ * direct map:  the class of the characters 0-255
+ * ranges:      classCount ranges encoded as (from << 16 | to)
+ * finals:      stateCount flags
+ * transitions: stateCount * classCount successors
+ * }</pre>
+ *
+ * A table written by {@link OffHeapDfaTable#create(Dfa, Path)} can be mapped by other processes
+ * with {@link OffHeapDfaTable#map(Path)}.
+ *
+ * <p>The buffer is released when the table becomes unreachable; {@link OffHeapDfaTable#close()}
+ * only detaches it so that it can not be used afterwards.
+ */
+public class OffHeapDfaTable extends DfaTable implements AutoCloseable {
+
+  private static final int MAGIC = 0x52584454; // "RXDT"
+  private static final int VERSION = 1;
+
+  private static final int HEADER_SIZE = 4;
+  private static final int DIRECT_MAP_OFFSET = HEADER_SIZE * 4;
+  private static final int RANGES_OFFSET = DIRECT_MAP_OFFSET + DIRECT_MAP_SIZE * 4;
+
+  /** Allocates a direct buffer and writes the tables of the given DFA into it. */
+  public static OffHeapDfaTable allocate(Dfa dfa) {
+    var states = dfa.getAllStates();
+    var size = sizeOf(states.length, dfa.getCharsNumTable().getTableSize());
+    var buffer = ByteBuffer.allocateDirect(size);
+    write(dfa, states, buffer);
+    return new OffHeapDfaTable(buffer);
+  }
+
+  /**
+   * Writes the tables of the given DFA into the file and returns a table that is mapped from it.
+   */
+  public static OffHeapDfaTable create(Dfa dfa, Path path) throws IOException {
+    var states = dfa.getAllStates();
+    var size = sizeOf(states.length, dfa.getCharsNumTable().getTableSize());
+    try (var channel =
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      var buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      write(dfa, states, buffer);
+      buffer.force();
+      return new OffHeapDfaTable(buffer);
+    }
+  }
+
+  /** Maps a table file that was written by {@link OffHeapDfaTable#create(Dfa, Path)}. */
+  public static OffHeapDfaTable map(Path path) throws IOException {
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      var size = channel.size();
+      if (size < RANGES_OFFSET || size > Integer.MAX_VALUE) {
+        throw new IOException("Not a DFA table file: " + path);
+      }
+      var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+        throw new IOException("Not a DFA table file: " + path);
+      }
+      // The counts are checked before they size anything, a corrupt header must not overflow.
+      var stateCount = buffer.getInt(8);
+      var classCount = buffer.getInt(12);
+      if (stateCount < 0 || classCount < 0 || bytesOf(stateCount, classCount) != size) {
+        throw new IOException("Corrupt DFA table file: " + path);
+      }
+      return new OffHeapDfaTable(buffer);
+    }
+  }
+
+  private static int sizeOf(int stateCount, int classCount) {
+    var bytes = bytesOf(stateCount, classCount);
+    if (bytes > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(
+          String.format("The DFA is too large: %d states, %d classes.", stateCount, classCount));
+    }
+    return (int) bytes;
+  }
+
+  /** Returns the size of the tables, which does not overflow for non-negative counts. */
+  private static long bytesOf(int stateCount, int classCount) {
+    var ints = (long) HEADER_SIZE + DIRECT_MAP_SIZE + classCount + stateCount;
+    ints += (long) stateCount * classCount;
+    return ints * 4;
+  }
+
+  private static void write(Dfa dfa, DfaState[] states, ByteBuffer buffer) {
+    var table = dfa.getCharsNumTable();
+    var classCount = table.getTableSize();
+    var numbers = numberStates(states);
+
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(MAGIC).putInt(VERSION).putInt(states.length).putInt(classCount);
+    for (int ch = 0; ch < DIRECT_MAP_SIZE; ch++) {
+      buffer.putInt(table.queryNumOfInputChar((char) ch));
+    }
+    for (int i = 1; i <= classCount; i++) {
+      var range = table.getCharRangeOfNum(i);
+      buffer.putInt(encodeRange(range.from, range.to));
+    }
+    for (var state : states) {
+      buffer.putInt(state.isFinalState() ? 1 : 0);
+    }
+    for (var state : states) {
+      for (var successor : state.getAllTransitions()) {
+        buffer.putInt(successor == null ? DEAD_STATE : numbers.get(successor));
+      }
+    }
+    buffer.flip();
+  }
+
+  private ByteBuffer buffer;
+  private final int stateCount;
+  private final int classCount;
+  private final int finalsOffset;
+  private final int transitionsOffset;
+
+  private OffHeapDfaTable(ByteBuffer buffer) {
+    this.buffer = buffer;
+    this.stateCount = buffer.getInt(8);
+    this.classCount = buffer.getInt(12);
+    this.finalsOffset = RANGES_OFFSET + classCount * 4;
+    this.transitionsOffset = finalsOffset + stateCount * 4;
+  }
+
+  private ByteBuffer buffer() {
+    var buffer = this.buffer;
+    if (buffer == null) {
+      throw new IllegalStateException("The DFA table has been closed.");
+    }
+    return buffer;
+  }
+
+  @Override
+  public int getStateCount() {
+    return stateCount;
+  }
+
+  @Override
+  public int getClassCount() {
+    return classCount;
+  }
+
+  @Override
+  public int getStartState() {
+    return 0;
+  }
+
+  @Override
+  public boolean isFinalState(int state) {
+    return buffer().getInt(finalsOffset + state * 4) != 0;
+  }
+
+  @Override
+  public int classOf(char ch) {
+    var buffer = buffer();
+    if (ch < DIRECT_MAP_SIZE) {
+      return buffer.getInt(DIRECT_MAP_OFFSET + ch * 4);
+    }
+    var l = 0;
+    var r = classCount - 1;
+    while (r >= l) {
+      var mid = l + ((r - l) >> 1);
+      var range = buffer.getInt(RANGES_OFFSET + mid * 4);
+      if (ch < rangeFrom(range)) {
+        r = mid - 1;
+      } else if (ch > rangeTo(range)) {
+        l = mid + 1;
+      } else {
+        return mid + 1;
+      }
+    }
+    return ICharsNumTable.INVALID_CHAR_NUM;
+  }
+
+  @Override
+  public int nextState(int state, int charClass) {
+    var index = state * classCount + charClass - 1;
+    return buffer().getInt(transitionsOffset + index * 4);
+  }
+
+  @Override
+  public long sizeInBytes() {
+    return buffer().capacity();
+  }
+
+  @Override
+  public void close() {
+    this.buffer = null;
+  }
+}
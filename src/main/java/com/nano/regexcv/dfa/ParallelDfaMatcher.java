@@ -0,0 +1,235 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.dfa;
+
+import com.nano.regexcv.table.ICharsNumTable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Matches large inputs on multiple threads by speculative chunked simulation.
+ *
+ * <p>The input is split into chunks. The first chunk is run from the start state, and every other
+ * chunk is run from all states of the DFA at once because its real start state is not known yet.
+ * Runs that reach the same state are merged, which happens quickly in small minimized DFAs, so a
+ * chunk usually costs little more than a single run. The state maps of the chunks are then composed
+ * in order.
+ *
+ * <p>Besides {@link #matches}, {@link #count} returns the number of non-empty prefixes of the input
+ * that are accepted. For a search table such as the ones of {@link
+ * com.nano.regexcv.grep.Grep#compileSearchTable(String)}, that is the number of positions where a
+ * match ends.
+ *
+ * <p>{@link ByteBuffer} inputs are taken as characters in {@code [0, 255]}, as in the tables of
+ * {@link Utf8DfaTable}.
+ */
+public class ParallelDfaMatcher {
+
+  public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+  /** The number of characters after which the runs of a chunk are merged. */
+  private static final int MERGE_INTERVAL = 64;
+
+  /** The input of a chunk. */
+  @FunctionalInterface
+  private interface Input {
+    /** Returns the class of the character at the index. */
+    int classAt(int index);
+  }
+
+  /** The end states and the counts of the runs of a chunk, indexed by their start states. */
+  private record ChunkResult(int[] endStates, long[] counts) {}
+
+  private final DfaTable table;
+  private final ForkJoinPool pool;
+  private final int chunkSize;
+
+  public ParallelDfaMatcher(DfaTable table) {
+    this(table, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+  }
+
+  public ParallelDfaMatcher(DfaTable table, ForkJoinPool pool, int chunkSize) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("Illegal chunk size: " + chunkSize);
+    }
+    this.table = table;
+    this.pool = pool;
+    this.chunkSize = chunkSize;
+  }
+
+  /** Returns true if the whole input is accepted by the DFA. */
+  public boolean matches(CharSequence input) {
+    var state = simulate(charInput(input), input.length(), false)[0];
+    return state != DfaTable.DEAD_STATE && table.isFinalState((int) state);
+  }
+
+  /** Returns true if the remaining bytes of the buffer are accepted by the DFA. */
+  public boolean matches(ByteBuffer input) {
+    var state = simulate(byteInput(input), input.remaining(), false)[0];
+    return state != DfaTable.DEAD_STATE && table.isFinalState((int) state);
+  }
+
+  /** Returns the number of non-empty prefixes of the input that are accepted by the DFA. */
+  public long count(CharSequence input) {
+    return simulate(charInput(input), input.length(), true)[1];
+  }
+
+  /** Returns the number of non-empty prefixes of the remaining bytes that are accepted. */
+  public long count(ByteBuffer input) {
+    return simulate(byteInput(input), input.remaining(), true)[1];
+  }
+
+  private Input charInput(CharSequence input) {
+    return index -> table.classOf(input.charAt(index));
+  }
+
+  private Input byteInput(ByteBuffer input) {
+    var offset = input.position();
+    return index -> table.classOf((char) (input.get(offset + index) & 0xFF));
+  }
+
+  /** Returns the end state and the count of the input. */
+  private long[] simulate(Input input, int length, boolean counts) {
+    var chunks = chunkCount(length, chunkSize);
+    var tasks = new ArrayList<ForkJoinTask<ChunkResult>>(chunks);
+    for (int i = 0; i < chunks; i++) {
+      var from = chunkStart(i, chunkSize);
+      var to = chunkEnd(i, length, chunkSize);
+      var starts = i == 0 ? new int[] {table.getStartState()} : allStates();
+      tasks.add(pool.submit(() -> runChunk(input, from, to, starts, counts)));
+    }
+
+    int state = table.getStartState();
+    long count = 0;
+    for (var task : tasks) {
+      if (state == DfaTable.DEAD_STATE) {
+        // No more input can be accepted.
+        task.cancel(false);
+        continue;
+      }
+      var result = task.join();
+      count += result.counts[state];
+      state = result.endStates[state];
+    }
+    return new long[] {state, count};
+  }
+
+  /**
+   * Returns the number of chunks of the input, which is at least one. This and the bounds below are
+   * computed without overflowing when the length is close to {@link Integer#MAX_VALUE}.
+   */
+  static int chunkCount(int length, int chunkSize) {
+    return Math.max(1, Math.ceilDiv(length, chunkSize));
+  }
+
+  /** Returns the index of the first character of the chunk. */
+  static int chunkStart(int chunk, int chunkSize) {
+    return Math.multiplyExact(chunk, chunkSize);
+  }
+
+  /** Returns the index after the last character of the chunk. */
+  static int chunkEnd(int chunk, int length, int chunkSize) {
+    var start = chunkStart(chunk, chunkSize);
+    return start + Math.min(chunkSize, length - start);
+  }
+
+  private int[] allStates() {
+    var states = new int[table.getStateCount()];
+    Arrays.setAll(states, i -> i);
+    return states;
+  }
+
+  /**
+   * Runs the chunk {@code [from, to)} from each of the start states. The runs are kept in lanes,
+   * and the lanes that reach the same state are merged periodically.
+   */
+  private ChunkResult runChunk(Input input, int from, int to, int[] starts, boolean counts) {
+    var stateCount = table.getStateCount();
+    var laneStates = starts.clone();
+    var laneCounts = new long[starts.length];
+    var lanes = starts.length;
+
+    // The lane of each start state and the difference between its count and the lane's count.
+    var startLanes = new int[starts.length];
+    var startOffsets = new long[starts.length];
+    Arrays.setAll(startLanes, i -> i);
+
+    // The lane that has been merged into for each state, stamped by the merge number.
+    var mergedLanes = new int[stateCount + 1];
+    var stamps = new int[stateCount + 1];
+    var stamp = 0;
+    var laneMap = new int[starts.length];
+    var previousCounts = new long[starts.length];
+
+    for (int i = from; i < to; i++) {
+      var charClass = input.classAt(i);
+      if (charClass == ICharsNumTable.INVALID_CHAR_NUM) {
+        Arrays.fill(laneStates, 0, lanes, DfaTable.DEAD_STATE);
+        break;
+      }
+      for (int lane = 0; lane < lanes; lane++) {
+        var state = laneStates[lane];
+        if (state != DfaTable.DEAD_STATE) {
+          state = table.nextState(state, charClass);
+          laneStates[lane] = state;
+          if (counts && state != DfaTable.DEAD_STATE && table.isFinalState(state)) {
+            laneCounts[lane]++;
+          }
+        }
+      }
+      if (lanes == 1 && laneStates[0] == DfaTable.DEAD_STATE) {
+        break;
+      }
+      if (lanes > 1 && (i - from) % MERGE_INTERVAL == MERGE_INTERVAL - 1) {
+        System.arraycopy(laneCounts, 0, previousCounts, 0, lanes);
+        stamp++;
+        var newLanes = 0;
+        for (int lane = 0; lane < lanes; lane++) {
+          var state = laneStates[lane];
+          // The dead state is stored at the end of the stamps.
+          var key = state == DfaTable.DEAD_STATE ? stateCount : state;
+          if (stamps[key] != stamp) {
+            stamps[key] = stamp;
+            mergedLanes[key] = newLanes;
+            laneStates[newLanes] = state;
+            laneCounts[newLanes] = previousCounts[lane];
+            newLanes++;
+          }
+          laneMap[lane] = mergedLanes[key];
+        }
+        // Keep the counts of the merged lanes as the offsets of their start states.
+        for (int s = 0; s < starts.length; s++) {
+          var lane = startLanes[s];
+          startLanes[s] = laneMap[lane];
+          startOffsets[s] += previousCounts[lane] - laneCounts[laneMap[lane]];
+        }
+        lanes = newLanes;
+      }
+    }
+
+    var endStates = new int[stateCount];
+    var chunkCounts = new long[stateCount];
+    Arrays.fill(endStates, DfaTable.DEAD_STATE);
+    for (int s = 0; s < starts.length; s++) {
+      endStates[starts[s]] = laneStates[startLanes[s]];
+      chunkCounts[starts[s]] = laneCounts[startLanes[s]] + startOffsets[s];
+    }
+    return new ChunkResult(endStates, chunkCounts);
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.dfa;
+
+import com.nano.regexcv.Pipelines;
+import com.nano.regexcv.nfa.Utf8NfaPass;
+import com.nano.regexcv.table.ICharsNumTable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link DfaTable} over the bytes of UTF-8 that matches encoded input without decoding it.
+ *
+ * <p>The table is compiled from the NFA of {@link Utf8NfaPass}, so it accepts the encoding of a
+ * string iff the DFA over chars accepts the string. Malformed UTF-8 is never matched.
+ */
+public class Utf8DfaTable {
+
+  /** Compiles the regex into a minimized DFA over the bytes of UTF-8. */
+  public static Utf8DfaTable compile(String regex) {
+    return Pipelines.parse(Pipelines.NONE)
+        .next(Pipelines.treeToUtf8Nfa(Pipelines.NONE, false))
+        .next(Pipelines.nfaToDfa(Pipelines.NONE))
+        .next(Utf8DfaTable::of)
+        .accept(regex);
+  }
+
+  /** Compiles a DFA whose table is produced by {@link Utf8NfaPass}. */
+  public static Utf8DfaTable of(Dfa dfa) {
+    return new Utf8DfaTable(HeapDfaTable.of(dfa));
+  }
+
+  private final DfaTable table;
+
+  /** The classes of all bytes, so no byte has to be looked up in the ranges. */
+  private final int[] classes;
+
+  public Utf8DfaTable(DfaTable table) {
+    this.table = table;
+    this.classes = new int[256];
+    for (int b = 0; b < classes.length; b++) {
+      classes[b] = table.classOf((char) b);
+    }
+  }
+
+  public DfaTable getTable() {
+    return table;
+  }
+
+  /**
+   * Returns the successor of the state on the given byte or {@link DfaTable#DEAD_STATE} if there is
+   * no transition.
+   */
+  public int nextState(int state, byte b) {
+    var charClass = classes[b & 0xFF];
+    if (charClass == ICharsNumTable.INVALID_CHAR_NUM) {
+      return DfaTable.DEAD_STATE;
+    }
+    return table.nextState(state, charClass);
+  }
+
+  public boolean matches(byte[] input) {
+    return matches(input, 0, input.length);
+  }
+
+  /** Returns true if the bytes {@code input[off, off + len)} are accepted by this DFA. */
+  public boolean matches(byte[] input, int off, int len) {
+    var state = table.getStartState();
+    var end = off + len;
+    for (int i = off; i < end && state != DfaTable.DEAD_STATE; i++) {
+      state = nextState(state, input[i]);
+    }
+    return state != DfaTable.DEAD_STATE && table.isFinalState(state);
+  }
+
+  /** Returns true if the remaining bytes of the buffer are accepted by this DFA. */
+  public boolean matches(ByteBuffer input) {
+    var state = table.getStartState();
+    var end = input.limit();
+    for (int i = input.position(); i < end && state != DfaTable.DEAD_STATE; i++) {
+      state = nextState(state, input.get(i));
+    }
+    return state != DfaTable.DEAD_STATE && table.isFinalState(state);
+  }
+
+  /** Encodes the input into UTF-8 and returns true if it is accepted by this DFA. */
+  public boolean matches(CharSequence input) {
+    return matches(input.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  public long sizeInBytes() {
+    return table.sizeInBytes() + 4L * classes.length;
+  }
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.grep;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Scans all regular files under directory trees with a {@link Grep}.
+ *
+ * <p>Each file is scanned by its own virtual thread, so many small files can wait for I/O at the
+ * same time. The number of open files is bounded by a semaphore, and the walk stops reading ahead
+ * when the results of too many files have not been consumed yet. The results are delivered to the
+ * listener on the calling thread in the order in which the files are walked.
+ *
+ * <p>In the {@link Mode#LINES} mode, the matched lines of a file are handed to the listener while
+ * the file is scanned. Each file buffers at most {@code maxBufferedBytes} of lines that have not
+ * been consumed, or a single longer line, and its scan waits until the listener catches up. So the
+ * lines pending at any time take at most {@code readAhead * maxBufferedBytes} bytes plus the lines
+ * longer than the limit, instead of whole files.
+ *
+ * <pre>{@code
+ * var scanner = new FileTreeScanner(new Grep("\\w+@\\w+"), FileTreeScanner.Mode.COUNT);
+ * scanner.scan(List.of(Path.of("logs")), result -> {
+ *   System.out.println(result.file() + ": " + result.matchedLines());
+ *   return true;
+ * });
+ * }</pre>
+ */
+public class FileTreeScanner {
+
+  public static final int DEFAULT_MAX_OPEN_FILES = 256;
+  public static final int DEFAULT_READ_AHEAD = 4096;
+  public static final int DEFAULT_MAX_BUFFERED_BYTES = 16 << 10;
+
+  /** What is collected from a file. */
+  public enum Mode {
+    /** Hands the matched lines to {@link ResultListener#onLine}. */
+    LINES,
+    /** Counts the matched lines. */
+    COUNT,
+    /** Stops scanning a file at its first matched line, which is not collected. */
+    FILES_WITH_MATCHES,
+  }
+
+  /** A matched line and its bytes. */
+  public record Line(long lineNumber, byte[] bytes) {}
+
+  /**
+   * The result of a file.
+   *
+   * @param matchedLines The number of matched lines. It is at most 1 in the {@link
+   *     Mode#FILES_WITH_MATCHES} mode.
+   * @param error The error that stopped scanning the file or null.
+   */
+  public record FileResult(Path file, long matchedLines, IOException error) {}
+
+  @FunctionalInterface
+  public interface ResultListener {
+    /**
+     * Receives a matched line in the {@link Mode#LINES} mode. The lines of a file are received in
+     * order and before the result of the file.
+     *
+     * @return false to stop the scan.
+     */
+    default boolean onLine(Path file, Line line) throws IOException {
+      return true;
+    }
+
+    /**
+     * @return false to stop the scan.
+     */
+    boolean onResult(FileResult result) throws IOException;
+  }
+
+  /** A walked file whose result has not been consumed. */
+  private record PendingFile(Path file, LineBuffer lines, Future<FileResult> result) {}
+
+  /** Marks the end of the walk in the queue of results. */
+  private static final PendingFile END = new PendingFile(null, null, null);
+
+  private final Grep grep;
+  private final Mode mode;
+  private final int maxOpenFiles;
+  private final int readAhead;
+  private final int maxBufferedBytes;
+
+  public FileTreeScanner(Grep grep, Mode mode) {
+    this(grep, mode, DEFAULT_MAX_OPEN_FILES, DEFAULT_READ_AHEAD);
+  }
+
+  public FileTreeScanner(Grep grep, Mode mode, int maxOpenFiles, int readAhead) {
+    this(grep, mode, maxOpenFiles, readAhead, DEFAULT_MAX_BUFFERED_BYTES);
+  }
+
+  /**
+   * @param maxOpenFiles The maximum number of files that are open at the same time.
+   * @param readAhead The maximum number of files that are walked but whose results have not been
+   *     consumed by the listener.
+   * @param maxBufferedBytes The maximum number of bytes of the unconsumed lines of a file.
+   */
+  public FileTreeScanner(
+      Grep grep, Mode mode, int maxOpenFiles, int readAhead, int maxBufferedBytes) {
+    if (maxOpenFiles <= 0 || readAhead <= 0 || maxBufferedBytes <= 0) {
+      throw new IllegalArgumentException(
+          String.format(
+              "maxOpenFiles: %d, readAhead: %d, maxBufferedBytes: %d",
+              maxOpenFiles, readAhead, maxBufferedBytes));
+    }
+    this.grep = grep;
+    this.mode = mode;
+    this.maxOpenFiles = maxOpenFiles;
+    this.readAhead = readAhead;
+    this.maxBufferedBytes = maxBufferedBytes;
+  }
+
+  /**
+   * Scans all regular files under the roots, which may also be files. Symbolic links are not
+   * followed. A file or directory that can not be read is reported as a result with an error.
+   */
+  public void scan(List<Path> roots, ResultListener listener)
+      throws IOException, InterruptedException {
+    var openFiles = new Semaphore(maxOpenFiles);
+    var results = new ArrayBlockingQueue<PendingFile>(readAhead);
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      var walker = Thread.ofVirtual().start(() -> walk(roots, executor, openFiles, results));
+      PendingFile pending = null;
+      try {
+        while ((pending = results.take()) != END && consume(pending, listener)) {}
+      } finally {
+        walker.interrupt();
+        walker.join();
+        if (pending != null && pending != END) {
+          pending.result.cancel(true);
+        }
+        results.forEach(p -> p.result.cancel(true));
+      }
+    }
+  }
+
+  /** Hands the lines and the result of the file to the listener and returns false to stop. */
+  private static boolean consume(PendingFile pending, ResultListener listener)
+      throws IOException, InterruptedException {
+    if (pending.lines != null) {
+      Line line;
+      while ((line = pending.lines.take()) != null) {
+        if (!listener.onLine(pending.file, line)) {
+          return false;
+        }
+      }
+    }
+    return listener.onResult(get(pending.result));
+  }
+
+  private static FileResult get(Future<FileResult> future) throws InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /**
+   * Walks the roots and submits a task for each file until it is interrupted.
+   *
+   * <p>A file is opened in walk order, because the walker takes its permit before submitting it. A
+   * file whose lines are waiting for the listener keeps its permit, but every file before it is
+   * open or done, so the file that the listener waits for can always be scanned.
+   */
+  private void walk(
+      List<Path> roots,
+      ExecutorService executor,
+      Semaphore openFiles,
+      BlockingQueue<PendingFile> results) {
+    var visitor =
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+              throws IOException {
+            if (attrs.isRegularFile()) {
+              try {
+                openFiles.acquire();
+              } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+              }
+              var lines = mode == Mode.LINES ? new LineBuffer(maxBufferedBytes) : null;
+              var result = executor.submit(() -> scanFile(file, lines, openFiles));
+              put(results, new PendingFile(file, lines, result));
+            }
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+            put(results, errorFile(file, e));
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+            if (e != null) {
+              put(results, errorFile(dir, e));
+            }
+            return FileVisitResult.CONTINUE;
+          }
+        };
+    try {
+      for (var root : roots) {
+        Files.walkFileTree(root, visitor);
+      }
+      results.put(END);
+    } catch (IOException | InterruptedException e) {
+      // The scan has been stopped.
+    } catch (RuntimeException e) {
+      // The listener rethrows it.
+      try {
+        results.put(new PendingFile(null, null, CompletableFuture.failedFuture(e)));
+      } catch (InterruptedException ignored) {
+        // The scan has been stopped.
+      }
+    }
+  }
+
+  private static void put(BlockingQueue<PendingFile> results, PendingFile pending)
+      throws InterruptedIOException {
+    try {
+      results.put(pending);
+    } catch (InterruptedException e) {
+      pending.result.cancel(true);
+      throw new InterruptedIOException();
+    }
+  }
+
+  private FileResult scanFile(Path file, LineBuffer lines, Semaphore openFiles) {
+    try {
+      var count =
+          switch (mode) {
+            case LINES ->
+                grep.scan(
+                    file,
+                    (lineNumber, line) -> {
+                      lines.put(toLine(lineNumber, line));
+                      return true;
+                    });
+            case COUNT -> grep.scan(file, (n, line) -> true);
+            case FILES_WITH_MATCHES -> grep.scan(file, (n, line) -> false);
+          };
+      return new FileResult(file, count, null);
+    } catch (IOException e) {
+      return new FileResult(file, 0, e);
+    } finally {
+      if (lines != null) {
+        lines.close();
+      }
+      openFiles.release();
+    }
+  }
+
+  private static Line toLine(long lineNumber, ByteBuffer line) {
+    var bytes = new byte[line.remaining()];
+    line.get(bytes);
+    return new Line(lineNumber, bytes);
+  }
+
+  private static PendingFile errorFile(Path file, IOException e) {
+    return new PendingFile(
+        file, null, CompletableFuture.completedFuture(new FileResult(file, 0, e)));
+  }
+
+  /**
+   * The lines of a file that have not been consumed, bounded by their bytes. It uses a lock instead
+   * of a monitor, so a waiting virtual thread does not pin its carrier.
+   */
+  private static class LineBuffer {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final ArrayDeque<Line> lines = new ArrayDeque<>();
+    private final int maxBytes;
+    private long bytes;
+    private boolean closed;
+
+    private LineBuffer(int maxBytes) {
+      this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Adds the line after enough lines are taken. A longer line is only added to an empty buffer.
+     */
+    private void put(Line line) throws InterruptedIOException {
+      lock.lock();
+      try {
+        while (!lines.isEmpty() && bytes + line.bytes().length > maxBytes) {
+          changed.await();
+        }
+        lines.add(line);
+        bytes += line.bytes().length;
+        changed.signalAll();
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /** Returns the next line, or null after the last line of a closed buffer. */
+    private Line take() throws InterruptedException {
+      lock.lock();
+      try {
+        while (lines.isEmpty() && !closed) {
+          changed.await();
+        }
+        var line = lines.poll();
+        if (line != null) {
+          bytes -= line.bytes().length;
+          changed.signalAll();
+        }
+        return line;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void close() {
+      lock.lock();
+      try {
+        closed = true;
+        changed.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.grep;
+
+import com.nano.regexcv.Pipelines;
+import com.nano.regexcv.dfa.AhoCorasickTable;
+import com.nano.regexcv.dfa.DfaTable;
+import com.nano.regexcv.dfa.Utf8DfaTable;
+import com.nano.regexcv.nfa.LiteralAutomaton;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Searches the lines of UTF-8 files that contain a match of a regex.
+ *
+ * <p>The regex is compiled once into a minimized DFA over the bytes of UTF-8 that skips any bytes
+ * before a match, so a line contains a match as soon as the DFA reaches a final state. Files are
+ * memory-mapped and scanned byte by byte, without decoding them or creating a string for each line.
+ * Like GNU grep, malformed UTF-8 is never a part of a match.
+ *
+ * <p>A regex that is only an alternation of literals, such as a keyword list, is compiled into an
+ * {@link AhoCorasickTable} instead, which is built much faster for many literals.
+ *
+ * <p>A {@code Grep} can be used by multiple threads at the same time.
+ */
+public class Grep {
+
+  /** The size of the regions that a file is mapped in. */
+  private static final long DEFAULT_WINDOW_SIZE = 1L << 30;
+
+  /** Files smaller than this are read instead of being mapped. */
+  private static final long MAPPING_THRESHOLD = 64 << 10;
+
+  /** Receives the lines that contain a match. */
+  @FunctionalInterface
+  public interface MatchListener {
+    /**
+     * @param lineNumber The line number starting from 1.
+     * @param line The bytes of the line without the line terminator. It is only valid during the
+     *     call.
+     * @return false to stop scanning the file.
+     */
+    boolean onMatch(long lineNumber, ByteBuffer line) throws IOException;
+  }
+
+  /** Compiles the regex into a DFA that accepts any input ending with a match of the regex. */
+  public static Utf8DfaTable compileSearchTable(String regex) {
+    var tree = Pipelines.parse(Pipelines.NONE).accept(regex);
+    var literals = LiteralAutomaton.literalsOf(tree);
+    if (literals != null) {
+      return new Utf8DfaTable(AhoCorasickTable.of(literals));
+    }
+    return Pipelines.treeToUtf8Nfa(Pipelines.NONE, true)
+        .next(Pipelines.nfaToDfa(Pipelines.NONE))
+        .next(Utf8DfaTable::of)
+        .accept(tree);
+  }
+
+  private final Utf8DfaTable table;
+  private final long windowSize;
+
+  public Grep(String regex) {
+    this(compileSearchTable(regex));
+  }
+
+  /**
+   * @param table A table compiled by {@link Grep#compileSearchTable(String)}.
+   */
+  public Grep(Utf8DfaTable table) {
+    this(table, DEFAULT_WINDOW_SIZE);
+  }
+
+  protected Grep(Utf8DfaTable table, long windowSize) {
+    this.table = table;
+    this.windowSize = windowSize;
+  }
+
+  /**
+   * Scans the file and calls the listener for each line that contains a match.
+   *
+   * @return The number of lines that contain a match.
+   */
+  public long scan(Path file, MatchListener listener) throws IOException {
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      var scanner = new Scanner(listener);
+      var size = channel.size();
+      if (size < MAPPING_THRESHOLD && size <= windowSize) {
+        // Reading a small file is cheaper than mapping and unmapping it.
+        var buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining()) {
+          if (channel.read(buffer) == -1) {
+            break;
+          }
+        }
+        scanner.scanWindow(buffer.flip(), true);
+        return scanner.matchedLines;
+      }
+      var position = 0L;
+      while (position < size && !scanner.stopped) {
+        var length = Math.min(windowSize, size - position);
+        var buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        var isLastWindow = position + length == size;
+        position += scanner.scanWindow(buffer, isLastWindow);
+      }
+      return scanner.matchedLines;
+    }
+  }
+
+  /** Returns true if the text contains a match. */
+  public boolean find(CharSequence text) {
+    var bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+    var dfa = table.getTable();
+    var state = dfa.getStartState();
+    for (int i = 0; i < bytes.length && !dfa.isFinalState(state); i++) {
+      state = table.nextState(state, bytes[i]);
+      if (state == DfaTable.DEAD_STATE) {
+        return false;
+      }
+    }
+    return dfa.isFinalState(state);
+  }
+
+  private class Scanner {
+    private final MatchListener listener;
+    private final DfaTable dfa;
+    private long lineNumber;
+    private long matchedLines;
+    private boolean stopped;
+
+    public Scanner(MatchListener listener) {
+      this.listener = listener;
+      this.dfa = table.getTable();
+    }
+
+    /**
+     * Scans the complete lines of the window. The last line is only scanned if it is the last
+     * window or if the window has no line terminator at all, in which case the line is split.
+     *
+     * @return The number of bytes that have been scanned.
+     */
+    public int scanWindow(ByteBuffer buffer, boolean isLastWindow) throws IOException {
+      var limit = buffer.limit();
+      if (!isLastWindow) {
+        var lastLf = limit - 1;
+        while (lastLf >= 0 && buffer.get(lastLf) != '\n') {
+          lastLf--;
+        }
+        limit = lastLf >= 0 ? lastLf + 1 : limit;
+      }
+      var lineStart = 0;
+      while (lineStart < limit && !stopped) {
+        var lineEnd = scanLine(buffer, lineStart, limit);
+        lineStart = lineEnd + 1;
+      }
+      return limit;
+    }
+
+    /** Scans a line and returns the index of its line terminator (or the limit). */
+    private int scanLine(ByteBuffer buffer, int lineStart, int limit) throws IOException {
+      lineNumber++;
+      var state = dfa.getStartState();
+      var matched = dfa.isFinalState(state);
+      var i = lineStart;
+      while (!matched && i < limit) {
+        var b = buffer.get(i);
+        if (b == '\n') {
+          break;
+        }
+        state = table.nextState(state, b);
+        if (state == DfaTable.DEAD_STATE) {
+          break;
+        }
+        matched = dfa.isFinalState(state);
+        i++;
+      }
+      var lineEnd = i;
+      while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+        lineEnd++;
+      }
+      if (matched) {
+        matchedLines++;
+        var line = buffer.slice(lineStart, lineEnd - lineStart);
+        stopped = !listener.onMatch(lineNumber, line);
+      }
+      return lineEnd;
+    }
+  }
+}
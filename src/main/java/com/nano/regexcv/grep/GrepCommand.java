@@ -0,0 +1,271 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.grep;
+
+import com.nano.regexcv.syntax.RegexSyntaxErrorException;
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+/** The {@code grep} subcommand that prints the lines of files that contain a match of a regex. */
+public class GrepCommand {
+
+  public interface Msg {
+    String COUNT_DESCRIPTION = "Print only the number of matched lines of each file";
+    String FILES_WITH_MATCHES_DESCRIPTION = "Print only the names of files that contain a match";
+    String LINE_NUMBER_DESCRIPTION = "Prefix each matched line with its line number";
+    String RECURSIVE_DESCRIPTION = "Search the files under the directories recursively";
+
+    String CMD_USAGE = "regexcv grep [OPTIONS] <regular expression> <file or directory>...\n\n";
+
+    String ERROR_MISSING_ARG = "Error: regexcv grep requires a regular expression and files";
+  }
+
+  public static final int EXIT_MATCHED = 0;
+  public static final int EXIT_NOT_MATCHED = 1;
+  public static final int EXIT_IO_ERROR = 5;
+  public static final int EXIT_SYNTAX_ERROR = 8;
+  public static final int EXIT_ILLEGAL_ARGS = 22;
+
+  private static final int COPY_BUFFER_SIZE = 8192;
+
+  /**
+   * Runs the command and returns the exit status: {@code 0} if any line matched, {@code 1} if no
+   * line matched.
+   */
+  public static int run(String... args) {
+    var out = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16);
+    try {
+      return run(out, args);
+    } finally {
+      try {
+        out.flush();
+      } catch (IOException e) {
+        System.err.println(e.getMessage());
+      }
+    }
+  }
+
+  protected static int run(OutputStream out, String... args) {
+    var options = defineOptions();
+    CommandLine cl;
+    try {
+      cl = new DefaultParser().parse(options, args);
+      if (cl.getArgs().length < 2) {
+        throw new ParseException(Msg.ERROR_MISSING_ARG);
+      }
+    } catch (ParseException e) {
+      System.err.println(e.getMessage() + "\n");
+      printUsage(options);
+      return EXIT_ILLEGAL_ARGS;
+    }
+
+    Grep grep;
+    try {
+      grep = new Grep(cl.getArgs()[0]);
+    } catch (RegexSyntaxErrorException e) {
+      System.err.println(e.getMessage());
+      return EXIT_SYNTAX_ERROR;
+    }
+
+    var command = new GrepCommand(grep, out, cl);
+    var files = Arrays.asList(cl.getArgs()).subList(1, cl.getArgs().length);
+    if (cl.hasOption("r")) {
+      command.grepTrees(files);
+    } else {
+      for (var file : files) {
+        try {
+          command.grepFile(file, files.size() > 1);
+        } catch (IOException e) {
+          command.printError(file, e);
+        }
+      }
+    }
+    if (command.hasError) {
+      return EXIT_IO_ERROR;
+    }
+    return command.matched ? EXIT_MATCHED : EXIT_NOT_MATCHED;
+  }
+
+  private static Options defineOptions() {
+    Options options = new Options();
+    options.addOption("c", "count", false, Msg.COUNT_DESCRIPTION);
+    options.addOption("l", "files-with-matches", false, Msg.FILES_WITH_MATCHES_DESCRIPTION);
+    options.addOption("n", "line-number", false, Msg.LINE_NUMBER_DESCRIPTION);
+    options.addOption("r", "recursive", false, Msg.RECURSIVE_DESCRIPTION);
+    return options;
+  }
+
+  private static void printUsage(Options options) {
+    HelpFormatter hf = new HelpFormatter();
+    hf.setLongOptPrefix(" --");
+    hf.setOptionComparator(null);
+    hf.printHelp(Msg.CMD_USAGE, options);
+  }
+
+  private final Grep grep;
+  private final OutputStream out;
+  private final boolean countOnly;
+  private final boolean filesWithMatches;
+  private final boolean lineNumber;
+  private final byte[] copyBuffer;
+
+  private boolean matched;
+  private boolean hasError;
+
+  private GrepCommand(Grep grep, OutputStream out, CommandLine cl) {
+    this.grep = grep;
+    this.out = out;
+    this.countOnly = cl.hasOption("c");
+    this.filesWithMatches = cl.hasOption("l");
+    this.lineNumber = cl.hasOption("n");
+    this.copyBuffer = new byte[COPY_BUFFER_SIZE];
+  }
+
+  private void grepFile(String file, boolean printsFileName) throws IOException {
+    var prefix = (file + ":").getBytes(StandardCharsets.UTF_8);
+    long count;
+    if (filesWithMatches) {
+      count = grep.scan(Path.of(file), (lineNo, line) -> false);
+      if (count > 0) {
+        writeLine(file);
+      }
+    } else if (countOnly) {
+      count = grep.scan(Path.of(file), (lineNo, line) -> true);
+      writeLine(printsFileName ? file + ":" + count : String.valueOf(count));
+    } else {
+      count =
+          grep.scan(
+              Path.of(file),
+              (lineNo, line) -> {
+                writeLinePrefix(printsFileName ? prefix : null, lineNo);
+                write(line);
+                out.write('\n');
+                return true;
+              });
+    }
+    matched |= count > 0;
+  }
+
+  /**
+   * Scans the files under the directories. The files are scanned concurrently and their results are
+   * printed in the order in which they are walked.
+   */
+  private void grepTrees(List<String> roots) {
+    var mode =
+        filesWithMatches
+            ? FileTreeScanner.Mode.FILES_WITH_MATCHES
+            : countOnly ? FileTreeScanner.Mode.COUNT : FileTreeScanner.Mode.LINES;
+    var listener =
+        new FileTreeScanner.ResultListener() {
+          private Path file;
+          private byte[] prefix;
+
+          @Override
+          public boolean onLine(Path file, FileTreeScanner.Line line) throws IOException {
+            if (!file.equals(this.file)) {
+              this.file = file;
+              this.prefix = (file + ":").getBytes(StandardCharsets.UTF_8);
+            }
+            writeLinePrefix(prefix, line.lineNumber());
+            out.write(line.bytes());
+            out.write('\n');
+            return true;
+          }
+
+          @Override
+          public boolean onResult(FileTreeScanner.FileResult result) throws IOException {
+            return printResult(result);
+          }
+        };
+    try {
+      new FileTreeScanner(grep, mode).scan(roots.stream().map(Path::of).toList(), listener);
+    } catch (IOException e) {
+      System.err.println("regexcv grep: " + e.getMessage());
+      hasError = true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      hasError = true;
+    }
+  }
+
+  private boolean printResult(FileTreeScanner.FileResult result) throws IOException {
+    var file = result.file().toString();
+    if (result.error() != null) {
+      printError(file, result.error());
+      return true;
+    }
+    matched |= result.matchedLines() > 0;
+    if (filesWithMatches) {
+      if (result.matchedLines() > 0) {
+        writeLine(file);
+      }
+    } else if (countOnly) {
+      writeLine(file + ":" + result.matchedLines());
+    }
+    return true;
+  }
+
+  private void printError(String file, IOException e) {
+    System.err.printf("regexcv grep: %s: %s\n", file, e.getMessage());
+    hasError = true;
+  }
+
+  /** Writes the file name prefix if it is not null and the line number if it is enabled. */
+  private void writeLinePrefix(byte[] prefix, long lineNo) throws IOException {
+    if (prefix != null) {
+      out.write(prefix);
+    }
+    if (lineNumber) {
+      writeLong(lineNo);
+      out.write(':');
+    }
+  }
+
+  private void writeLine(String str) throws IOException {
+    out.write(str.getBytes(StandardCharsets.UTF_8));
+    out.write('\n');
+  }
+
+  private void writeLong(long n) throws IOException {
+    var i = copyBuffer.length;
+    do {
+      copyBuffer[--i] = (byte) ('0' + n % 10);
+      n /= 10;
+    } while (n != 0);
+    out.write(copyBuffer, i, copyBuffer.length - i);
+  }
+
+  private void write(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      var n = Math.min(buffer.remaining(), copyBuffer.length);
+      buffer.get(copyBuffer, 0, n);
+      out.write(copyBuffer, 0, n);
+    }
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.jfr;
+
+import com.nano.regexcv.Pass;
+import com.nano.regexcv.PassStatistics;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * A pass that emits a {@link PassEvent} for each run of another pass while the flight recorder is
+ * recording the event. When it is not recorded, this pass only adds a flag check.
+ *
+ * <p>The event class is not loaded until the flight recorder has been initialized, because
+ * registering it loads the flight recorder and costs a short-lived CLI more than all passes.
+ */
+public class FlightRecorderPass<In, Out> implements Pass<In, Out> {
+
+  private final String name;
+  private final int patternHash;
+  private final Pass<In, Out> pass;
+
+  /**
+   * @param name The name of the pass in the events.
+   * @param pattern The regex that is compiled by the pass.
+   * @param pass The pass to be recorded.
+   */
+  public FlightRecorderPass(String name, String pattern, Pass<In, Out> pass) {
+    this.name = name;
+    this.patternHash = pattern.hashCode();
+    this.pass = pass;
+  }
+
+  @Override
+  public Out accept(In input) {
+    if (!FlightRecorder.isInitialized()) {
+      return pass.accept(input);
+    }
+    var event = new PassEvent();
+    if (!event.isEnabled()) {
+      return pass.accept(input);
+    }
+    event.begin();
+    var output = pass.accept(input);
+    event.end();
+    if (event.shouldCommit()) {
+      var sizes = PassStatistics.measure(output);
+      event.pass = name;
+      event.patternHash = patternHash;
+      event.astNodes = sizes.getOrDefault("astNodes", 0L);
+      event.tableClasses = sizes.getOrDefault("tableClasses", 0L);
+      event.states =
+          sizes.getOrDefault(
+              "nfaStates", sizes.getOrDefault("dfaStates", sizes.getOrDefault("digraphNodes", 0L)));
+      event.edges =
+          sizes.getOrDefault(
+              "nfaEdges", sizes.getOrDefault("dfaEdges", sizes.getOrDefault("digraphEdges", 0L)));
+      event.commit();
+    }
+    return output;
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** A flight recorder event that is emitted for sampled matches of a compiled pattern. */
+@Name("com.nano.regexcv.Match")
+@Label("Regex Match")
+@Category("Regexcv")
+@Description("A sampled match of a compiled regex")
+@StackTrace(false)
+public class MatchEvent extends Event {
+
+  @Label("Pattern Hash")
+  @Description("The hash code of the regex text")
+  public int patternHash;
+
+  @Label("Input Length")
+  public int inputLength;
+
+  @Label("Matched")
+  public boolean matched;
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** A flight recorder event that is emitted when a compilation pass finishes. */
+@Name("com.nano.regexcv.Pass")
+@Label("Regex Compilation Pass")
+@Category("Regexcv")
+@Description("A pass of the regex compilation pipeline")
+@StackTrace(false)
+public class PassEvent extends Event {
+
+  @Label("Pass")
+  public String pass;
+
+  @Label("Pattern Hash")
+  @Description("The hash code of the regex text")
+  public int patternHash;
+
+  @Label("AST Nodes")
+  public long astNodes;
+
+  @Label("Character Classes")
+  public long tableClasses;
+
+  @Label("States")
+  @Description("The number of NFA/DFA states or digraph nodes of the output")
+  public long states;
+
+  @Label("Edges")
+  @Description("The number of NFA/DFA transitions or digraph edges of the output")
+  public long edges;
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.jfr;
+
+import com.nano.regexcv.dfa.DfaTable;
+import java.util.concurrent.ThreadLocalRandom;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * A {@link DfaTable} that emits a {@link MatchEvent} for a random sample of the {@link
+ * DfaTable#matches(CharSequence)} calls on another table.
+ *
+ * <p>Like {@link FlightRecorderPass}, it does not load the event class until the flight recorder
+ * has been initialized.
+ */
+public class RecordingDfaTable extends DfaTable {
+
+  private final DfaTable table;
+  private final int patternHash;
+  private final int sampleInterval;
+
+  /**
+   * @param table The table that does the matching.
+   * @param pattern The regex of the table.
+   * @param sampleInterval On average, one of every {@code sampleInterval} matches is recorded.
+   */
+  public RecordingDfaTable(DfaTable table, String pattern, int sampleInterval) {
+    if (sampleInterval <= 0) {
+      throw new IllegalArgumentException("Illegal sample interval: " + sampleInterval);
+    }
+    this.table = table;
+    this.patternHash = pattern.hashCode();
+    this.sampleInterval = sampleInterval;
+  }
+
+  @Override
+  public boolean matches(CharSequence input) {
+    if (!FlightRecorder.isInitialized()) {
+      return table.matches(input);
+    }
+    if (sampleInterval > 1 && ThreadLocalRandom.current().nextInt(sampleInterval) != 0) {
+      return table.matches(input);
+    }
+    var event = new MatchEvent();
+    if (!event.isEnabled()) {
+      return table.matches(input);
+    }
+    event.begin();
+    var matched = table.matches(input);
+    event.end();
+    if (event.shouldCommit()) {
+      event.patternHash = patternHash;
+      event.inputLength = input.length();
+      event.matched = matched;
+      event.commit();
+    }
+    return matched;
+  }
+
+  /** Batches are matched by the other table and are not recorded. */
+  @Override
+  public void matchAll(CharSequence[] inputs, boolean[] out) {
+    table.matchAll(inputs, out);
+  }
+
+  @Override
+  public int getStateCount() {
+    return table.getStateCount();
+  }
+
+  @Override
+  public int getClassCount() {
+    return table.getClassCount();
+  }
+
+  @Override
+  public int getStartState() {
+    return table.getStartState();
+  }
+
+  @Override
+  public boolean isFinalState(int state) {
+    return table.isFinalState(state);
+  }
+
+  @Override
+  public int classOf(char ch) {
+    return table.classOf(ch);
+  }
+
+  @Override
+  public int nextState(int state, int charClass) {
+    return table.nextState(state, charClass);
+  }
+
+  @Override
+  public long sizeInBytes() {
+    return table.sizeInBytes();
+  }
+}
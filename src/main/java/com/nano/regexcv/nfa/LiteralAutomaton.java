@@ -0,0 +1,232 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.nfa;
+
+import com.nano.regexcv.syntax.tree.RAlternation;
+import com.nano.regexcv.syntax.tree.RContatenation;
+import com.nano.regexcv.syntax.tree.REmpty;
+import com.nano.regexcv.syntax.tree.RSingleCharacter;
+import com.nano.regexcv.syntax.tree.RegularExpression;
+import com.nano.regexcv.table.ICharsNumTable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Builds the minimal acyclic automaton (DAWG) of a set of literals by the incremental construction
+ * of Daciuk et al. for sorted input.
+ *
+ * <p>The words are added in order. A new word shares the longest common prefix with the previous
+ * one, and the states of the previous word after that prefix can not change anymore, so they are
+ * replaced by an equivalent state of the register or registered themselves. The automaton is
+ * minimal after each word and it is built in time linear in the total length of the words, apart
+ * from sorting them.
+ */
+public class LiteralAutomaton {
+
+  /** A state of the automaton. Its transitions are added in the increasing order of labels. */
+  private static class State {
+    private boolean isFinal;
+    private char[] labels = new char[0];
+    private State[] targets = new State[0];
+    private int size;
+    private int hash;
+
+    private void addTransition(char label, State target) {
+      if (size == labels.length) {
+        var capacity = Math.max(2, size * 2);
+        labels = Arrays.copyOf(labels, capacity);
+        targets = Arrays.copyOf(targets, capacity);
+      }
+      labels[size] = label;
+      targets[size] = target;
+      size++;
+    }
+
+    /** Computes the hash of a state that can not change anymore. */
+    private void freeze() {
+      var h = Boolean.hashCode(isFinal);
+      for (int i = 0; i < size; i++) {
+        h = h * 31 + labels[i];
+        h = h * 31 + System.identityHashCode(targets[i]);
+      }
+      hash = h;
+    }
+
+    /**
+     * Two frozen states are equivalent if they are both final or not and have equal transitions.
+     */
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof State other) || isFinal != other.isFinal || size != other.size) {
+        return false;
+      }
+      for (int i = 0; i < size; i++) {
+        if (labels[i] != other.labels[i] || targets[i] != other.targets[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  /**
+   * Returns the literals of the alternatives of the node, or null if an alternative is not a
+   * literal. A literal is a single character, an empty regex or a concatenation of single
+   * characters.
+   */
+  public static List<String> literalsOf(RAlternation node) {
+    var literals = new ArrayList<String>(node.getRegexList().size());
+    var buf = new StringBuilder();
+    for (var alternative : node.getRegexList()) {
+      buf.setLength(0);
+      if (!appendLiteral(alternative, buf)) {
+        return null;
+      }
+      literals.add(buf.toString());
+    }
+    return literals;
+  }
+
+  /**
+   * Returns the literals that the regex is an alternation of, or null if it is not a literal or an
+   * alternation of literals.
+   */
+  public static List<String> literalsOf(RegularExpression regex) {
+    if (regex instanceof RAlternation alternation) {
+      return literalsOf(alternation);
+    }
+    var buf = new StringBuilder();
+    return appendLiteral(regex, buf) ? List.of(buf.toString()) : null;
+  }
+
+  /**
+   * Appends the chars of a literal to the buffer. Concatenations may be nested, since the parser
+   * makes the surrogate pair of a supplementary code point a concatenation of its own.
+   */
+  private static boolean appendLiteral(RegularExpression regex, StringBuilder buf) {
+    var stack = new ArrayDeque<RegularExpression>();
+    stack.push(regex);
+    while (!stack.isEmpty()) {
+      var node = stack.pop();
+      if (node instanceof RSingleCharacter ch) {
+        buf.append(ch.getChar());
+      } else if (node instanceof RContatenation concatenation) {
+        var elements = concatenation.getRegexList();
+        for (int i = elements.size() - 1; i >= 0; i--) {
+          stack.push(elements.get(i));
+        }
+      } else if (!(node instanceof REmpty)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Builds an NFA that accepts exactly the given words. Its states have no ε-transitions except the
+   * ones from the final states of the automaton to the end of the NFA, so the subset construction
+   * of it does not compute large ε-closures.
+   *
+   * @param table Each character of the words must be a class of its own in the table.
+   */
+  public static Nfa toNfa(List<String> words, ICharsNumTable table) {
+    var root = build(words);
+    var nfa = new Nfa(table);
+    var states = new IdentityHashMap<State, NfaState>();
+    states.put(root, nfa.getStart());
+    var stack = new ArrayList<State>();
+    stack.add(root);
+    while (!stack.isEmpty()) {
+      var state = stack.remove(stack.size() - 1);
+      var nfaState = states.get(state);
+      if (state.isFinal) {
+        nfaState.addEmptyTransition(nfa.getEnd());
+      }
+      for (int i = 0; i < state.size; i++) {
+        var target = state.targets[i];
+        var nfaTarget = states.get(target);
+        if (nfaTarget == null) {
+          nfaTarget = new NfaState(table.getTableSize());
+          states.put(target, nfaTarget);
+          stack.add(target);
+        }
+        nfaState.addTransition(table.getNumOfChar(state.labels[i]), nfaTarget);
+      }
+    }
+    return nfa;
+  }
+
+  /** Builds the minimal automaton of the words and returns its start state. */
+  private static State build(List<String> words) {
+    var sorted = words.toArray(new String[0]);
+    Arrays.sort(sorted);
+    var register = new HashMap<State, State>();
+    // path.get(i) is the state after the first i characters of the previous word.
+    var path = new ArrayList<State>();
+    path.add(new State());
+    var previous = "";
+    for (var word : sorted) {
+      var prefix = commonPrefixLength(previous, word);
+      minimize(path, prefix, register);
+      var state = path.get(prefix);
+      for (int i = prefix; i < word.length(); i++) {
+        var next = new State();
+        state.addTransition(word.charAt(i), next);
+        path.add(next);
+        state = next;
+      }
+      state.isFinal = true;
+      previous = word;
+    }
+    minimize(path, 0, register);
+    return path.get(0);
+  }
+
+  /**
+   * Replaces the states of the path after the given depth with their equivalents in the register,
+   * or registers them. The deepest state comes first, so the targets of a state are already unique
+   * when it is looked up.
+   */
+  private static void minimize(ArrayList<State> path, int depth, HashMap<State, State> register) {
+    for (int i = path.size() - 1; i > depth; i--) {
+      var state = path.remove(i);
+      state.freeze();
+      var equivalent = register.putIfAbsent(state, state);
+      if (equivalent != null) {
+        var parent = path.get(i - 1);
+        parent.targets[parent.size - 1] = equivalent;
+      }
+    }
+  }
+
+  private static int commonPrefixLength(String a, String b) {
+    var n = Math.min(a.length(), b.length());
+    var i = 0;
+    while (i < n && a.charAt(i) == b.charAt(i)) {
+      i++;
+    }
+    return i;
+  }
+}
@@ -19,13 +19,25 @@ import com.nano.regexcv.table.ICharsNumTable;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 
 public class NfaState {
 
+  /**
+   * A transition on the code points of the ranges, which are the sorted and merged {@code from, to}
+   * pairs of a {@link com.nano.regexcv.syntax.tree.RCodePointClass}. The ranges are compared by
+   * identity, since every class has its own array.
+   */
+  public record CodePointTransition(int[] ranges, NfaState target) {}
+
   private HashSet<NfaState>[] transitions;
 
+  /** Only an NFA that is built for {@link Utf8NfaPass} has them, or else it is null. */
+  private LinkedHashSet<CodePointTransition> codePointTransitions;
+
   private boolean isFinal;
 
   public NfaState(int charSetCount) {
@@ -50,6 +62,24 @@ public class NfaState {
     this.transitions[charClass].addAll(states);
   }
 
+  public void addCodePointTransition(int[] ranges, NfaState state) {
+    addCodePointTransitions(List.of(new CodePointTransition(ranges, state)));
+  }
+
+  public void addCodePointTransitions(Collection<CodePointTransition> codePointTransitions) {
+    if (codePointTransitions.isEmpty()) {
+      return;
+    }
+    if (this.codePointTransitions == null) {
+      this.codePointTransitions = new LinkedHashSet<>();
+    }
+    this.codePointTransitions.addAll(codePointTransitions);
+  }
+
+  public Set<CodePointTransition> getCodePointTransitions() {
+    return codePointTransitions != null ? codePointTransitions : Collections.emptySet();
+  }
+
   public void removeEpsilonTransitions() {
     transitions[ICharsNumTable.EPSILON_CHAR_NUM] = null;
   }
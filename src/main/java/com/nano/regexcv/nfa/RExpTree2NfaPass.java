@@ -19,29 +19,78 @@ import com.nano.regexcv.Pass;
 import com.nano.regexcv.syntax.tree.RAlternation;
 import com.nano.regexcv.syntax.tree.RCharRange;
 import com.nano.regexcv.syntax.tree.RCharRangeList;
+import com.nano.regexcv.syntax.tree.RCodePointClass;
 import com.nano.regexcv.syntax.tree.RContatenation;
 import com.nano.regexcv.syntax.tree.REmpty;
 import com.nano.regexcv.syntax.tree.ROneOrMore;
 import com.nano.regexcv.syntax.tree.ROptional;
 import com.nano.regexcv.syntax.tree.RSingleCharacter;
-import com.nano.regexcv.syntax.tree.RTreeVisitor;
+import com.nano.regexcv.syntax.tree.RTreeFolder;
+import com.nano.regexcv.syntax.tree.RTreeTraversal;
 import com.nano.regexcv.syntax.tree.RZeroOrMore;
 import com.nano.regexcv.syntax.tree.RegularExpression;
 import com.nano.regexcv.table.ICharsNumTable;
 import com.nano.regexcv.table.RTreeWithTable;
+import java.util.List;
+import java.util.Optional;
 
-public class RExpTree2NfaPass implements RTreeVisitor<Nfa>, Pass<RTreeWithTable, Nfa> {
+/**
+ * Converts a regex tree into an NFA by Thompson's construction. The tree is folded iteratively, so
+ * deeply nested regexes do not overflow the stack.
+ *
+ * <p>An alternation of at least {@link RExpTree2NfaPass#LITERAL_AUTOMATON_THRESHOLD} literals, such
+ * as a keyword list {@code (foo)|(bar)|(baz)|...}, is converted into a {@link LiteralAutomaton}
+ * instead. Thompson's construction would connect every literal to one state by an ε-transition, and
+ * the subset construction would compute a closure of all of them.
+ *
+ * <p>A {@link RCodePointClass} is built from the surrogate pairs of {@link
+ * RCodePointClass#toUtf16()}, unless the NFA is built for {@link Utf8NfaPass}. Then it is one
+ * {@link NfaState.CodePointTransition}, which {@link Utf8NfaPass} encodes from the code point
+ * ranges.
+ */
+public class RExpTree2NfaPass implements RTreeFolder<Nfa>, Pass<RTreeWithTable, Nfa> {
 
+  /**
+   * The number of alternatives from which a literal alternation is converted into a {@link
+   * LiteralAutomaton}. Smaller ones keep the Thompson NFA, which is easier to read in a digraph.
+   */
+  public static final int LITERAL_AUTOMATON_THRESHOLD = 16;
+
+  private final boolean codePointTransitions;
   private ICharsNumTable table;
 
+  public RExpTree2NfaPass() {
+    this(false);
+  }
+
+  /**
+   * @param codePointTransitions If true, code point classes become code point transitions, which
+   *     only {@link Utf8NfaPass} accepts.
+   */
+  public RExpTree2NfaPass(boolean codePointTransitions) {
+    this.codePointTransitions = codePointTransitions;
+  }
+
   @Override
   public Nfa accept(RTreeWithTable input) {
     this.table = input.table;
-    var nfa = input.tree.accept(this);
+    var nfa = RTreeTraversal.fold(input.tree, this);
     this.table = null;
     return nfa;
   }
 
+  @Override
+  public Optional<Nfa> visitSubtree(RegularExpression node) {
+    if (node instanceof RAlternation alternation
+        && alternation.getRegexList().size() >= LITERAL_AUTOMATON_THRESHOLD) {
+      var literals = LiteralAutomaton.literalsOf(alternation);
+      if (literals != null) {
+        return Optional.of(LiteralAutomaton.toNfa(literals, table));
+      }
+    }
+    return Optional.empty();
+  }
+
   @Override
   public Nfa visit(RSingleCharacter node) {
     var nfa = new Nfa(table);
@@ -86,15 +135,23 @@ public class RExpTree2NfaPass implements RTreeVisitor<Nfa>, Pass<RTreeWithTable,
   }
 
   @Override
-  public Nfa visit(RAlternation node) {
+  public Nfa visit(RCodePointClass node) {
+    if (!codePointTransitions) {
+      return RTreeTraversal.fold(node.toUtf16(), this);
+    }
+    var nfa = new Nfa(table);
+    nfa.getStart().addCodePointTransition(node.getCodePointRanges(), nfa.getEnd());
+    return nfa;
+  }
+
+  @Override
+  public Nfa visit(RAlternation node, List<Nfa> alternatives) {
     var nfa = new Nfa(table);
     var start = nfa.getStart();
     var end = nfa.getEnd();
 
-    var regexList = node.getRegexList();
-    if (!regexList.isEmpty()) {
-      for (RegularExpression regex : regexList) {
-        var subnfa = regex.accept(this);
+    if (!alternatives.isEmpty()) {
+      for (var subnfa : alternatives) {
         subnfa.getEnd().unmarkFinalState();
         start.addEmptyTransition(subnfa.getStart());
         subnfa.getEnd().addEmptyTransition(end);
@@ -107,14 +164,13 @@ public class RExpTree2NfaPass implements RTreeVisitor<Nfa>, Pass<RTreeWithTable,
   }
 
   @Override
-  public Nfa visit(RContatenation node) {
+  public Nfa visit(RContatenation node, List<Nfa> elements) {
     var nfa = new Nfa(table);
     var start = nfa.getStart();
     var end = nfa.getEnd();
 
     var last = start;
-    for (RegularExpression regex : node.getRegexList()) {
-      Nfa subnfa = regex.accept(this);
+    for (var subnfa : elements) {
       subnfa.getEnd().unmarkFinalState();
       last.addEmptyTransition(subnfa.getStart());
       last = subnfa.getEnd();
@@ -134,22 +190,19 @@ public class RExpTree2NfaPass implements RTreeVisitor<Nfa>, Pass<RTreeWithTable,
   }
 
   @Override
-  public Nfa visit(ROneOrMore node) {
-    var nfa = node.getQuiantifiedNode().accept(this);
+  public Nfa visit(ROneOrMore node, Nfa nfa) {
     nfa.getEnd().addEmptyTransition(nfa.getStart());
     return nfa;
   }
 
   @Override
-  public Nfa visit(ROptional node) {
-    var nfa = node.getQuiantifiedNode().accept(this);
+  public Nfa visit(ROptional node, Nfa nfa) {
     nfa.getStart().addEmptyTransition(nfa.getEnd());
     return nfa;
   }
 
   @Override
-  public Nfa visit(RZeroOrMore node) {
-    var nfa = node.getQuiantifiedNode().accept(this);
+  public Nfa visit(RZeroOrMore node, Nfa nfa) {
     var start = nfa.getStart();
     var end = nfa.getEnd();
     start.addEmptyTransition(end);
@@ -36,6 +36,10 @@ public class RemoveEpsilonClosurePass implements Pass<Nfa, Nfa> {
           .flatMap(e -> e.stream())
           .filter(marked::add)
           .forEach(stack::push);
+      node.getCodePointTransitions().stream()
+          .map(NfaState.CodePointTransition::target)
+          .filter(marked::add)
+          .forEach(stack::push);
     }
     // The end state may not exist after the ε-closure is removed.
     nfa.end = null;
@@ -57,6 +61,7 @@ public class RemoveEpsilonClosurePass implements Pass<Nfa, Nfa> {
           from.addTransitions(i, transitions[i]);
         }
       }
+      from.addCodePointTransitions(node.getCodePointTransitions());
       node.getEpsilonTransitions().stream().filter(marked::add).forEach(stack::push);
     }
 
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.nfa;
+
+import com.nano.regexcv.Pass;
+import com.nano.regexcv.table.CharsNumTableBuilder;
+import com.nano.regexcv.table.CharsNumTableCache;
+import com.nano.regexcv.table.ICharsNumTable;
+import com.nano.regexcv.util.CharacterRange;
+import com.nano.regexcv.util.Utf8Sequences;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This converts a NFA over UTF-16 chars into a NFA over the bytes of UTF-8, so its DFA matches the
+ * encoded input without decoding it. The bytes are represented as characters in {@code [0, 255]}.
+ *
+ * <p>Every char class transition is replaced by the byte range sequences of {@link Utf8Sequences}.
+ * A high surrogate transition followed by a low surrogate transition becomes a 4-byte sequence of
+ * the supplementary code points. Lone surrogates can not be encoded, so their transitions are
+ * dropped.
+ *
+ * <p>A code point class, such as {@code \p{L}}, should be built by {@code new
+ * RExpTree2NfaPass(true)}. Its {@link NfaState.CodePointTransition} is encoded from the code point
+ * ranges at once, so the surrogate pairs of its UTF-16 form are never built and paired again.
+ *
+ * <p>The ε-closure of the given NFA is removed in place.
+ */
+public class Utf8NfaPass implements Pass<Nfa, Nfa> {
+
+  private static final char MAX_BYTE = 0xFF;
+
+  /** The transitions from a state on the code point ranges. */
+  private record Edge(NfaState from, List<CharacterRange[]> sequences, Set<NfaState> targets) {}
+
+  /** The byte ranges of a sequence after its first byte and the states they lead to. */
+  private record Suffix(List<CharacterRange> ranges, List<NfaState> targets) {}
+
+  private final boolean unanchored;
+
+  public Utf8NfaPass() {
+    this(false);
+  }
+
+  /**
+   * @param unanchored If true, the result also accepts any bytes before the input of the given NFA,
+   *     so it can be used to search the input. Unlike a {@code .*} prefix, it also skips malformed
+   *     UTF-8.
+   */
+  public Utf8NfaPass(boolean unanchored) {
+    this.unanchored = unanchored;
+  }
+
+  @Override
+  public Nfa accept(Nfa nfa) {
+    nfa = new RemoveEpsilonClosurePass().accept(nfa);
+    var charTable = nfa.getCharsNumTable();
+    var states = collectStates(nfa.getStart());
+    var representatives = representatives(states);
+    states = states.stream().filter(state -> representatives.get(state) == state).toList();
+
+    var edges = new ArrayList<Edge>();
+    // The ranges of a class are shared by the states that the ε-closure copied its transition to.
+    var codePointSequences = new IdentityHashMap<int[], List<CharacterRange[]>>();
+    for (var state : states) {
+      for (var transition : state.getCodePointTransitions()) {
+        var sequences =
+            codePointSequences.computeIfAbsent(transition.ranges(), Utf8NfaPass::sequencesOf);
+        addEdge(edges, state, sequences, Set.of(transition.target()));
+      }
+      var transitions = state.getTransitions();
+      for (int num = 1; num < transitions.length; num++) {
+        if (transitions[num] == null) {
+          continue;
+        }
+        var range = charTable.getCharRangeOfNum(num);
+        addEdge(edges, state, Utf8Sequences.of(range.from, range.to), transitions[num]);
+        var high = intersect(range, Character.MIN_HIGH_SURROGATE, Character.MAX_HIGH_SURROGATE);
+        if (high != null) {
+          for (var next : transitions[num]) {
+            addSurrogatePairEdges(edges, charTable, state, high, next);
+          }
+        }
+      }
+    }
+
+    var builder = new CharsNumTableBuilder();
+    if (unanchored) {
+      builder.addCharRange((char) 0, MAX_BYTE);
+    }
+    for (var edge : edges) {
+      edge.sequences.stream().flatMap(Arrays::stream).forEach(builder::addCharRange);
+    }
+    var byteNfa = new Nfa(builder.build(CharsNumTableCache.shared()));
+    var tableSize = byteNfa.getCharsNumTable().getTableSize();
+    var byteStates = new HashMap<NfaState, NfaState>();
+    for (var state : states) {
+      var byteState = new NfaState(tableSize);
+      if (state.isFinalState()) {
+        byteState.markFinalState();
+      }
+      byteStates.put(state, byteState);
+    }
+    var suffixStates = new HashMap<Suffix, NfaState>();
+    for (var edge : edges) {
+      var targets =
+          edge.targets.stream().map(representatives::get).distinct().map(byteStates::get).toList();
+      addSequences(byteNfa, suffixStates, byteStates.get(edge.from), edge.sequences, targets);
+    }
+    byteNfa.start = byteStates.get(representatives.get(nfa.getStart()));
+    if (unanchored) {
+      var start = new NfaState(tableSize);
+      for (int num = 1; num <= tableSize; num++) {
+        start.addTransition(num, start);
+      }
+      start.addEmptyTransition(byteNfa.start);
+      byteNfa.start = start;
+    }
+    byteNfa.end = null;
+    return byteNfa;
+  }
+
+  private static List<NfaState> collectStates(NfaState start) {
+    var states = new ArrayList<NfaState>();
+    var marked = new HashSet<NfaState>();
+    var stack = new LinkedList<NfaState>();
+    stack.push(start);
+    marked.add(start);
+    while (!stack.isEmpty()) {
+      var state = stack.pop();
+      states.add(state);
+      for (var targets : state.getTransitions()) {
+        if (targets != null) {
+          targets.stream().filter(marked::add).forEach(stack::push);
+        }
+      }
+      for (var transition : state.getCodePointTransitions()) {
+        if (marked.add(transition.target())) {
+          stack.push(transition.target());
+        }
+      }
+    }
+    return states;
+  }
+
+  /** The final flag and the transitions of a state, which determine its language. */
+  private record Signature(
+      boolean isFinal,
+      List<HashSet<NfaState>> transitions,
+      Set<NfaState.CodePointTransition> codePointTransitions) {}
+
+  /**
+   * Returns the representative of each state, which is the first state with the same signature.
+   * After the ε-closure has been removed, the ends of the alternatives in a loop like {@code
+   * \p{L}+} all have the transitions of the loop, so merging them builds the byte sequences of the
+   * loop once instead of once for every alternative.
+   */
+  private static HashMap<NfaState, NfaState> representatives(List<NfaState> states) {
+    var result = new HashMap<NfaState, NfaState>();
+    var firsts = new HashMap<Signature, NfaState>();
+    for (var state : states) {
+      var signature =
+          new Signature(
+              state.isFinalState(),
+              Arrays.asList(state.getTransitions()),
+              state.getCodePointTransitions());
+      result.put(state, firsts.computeIfAbsent(signature, k -> state));
+    }
+    return result;
+  }
+
+  private static void addEdge(
+      List<Edge> edges, NfaState from, List<CharacterRange[]> sequences, Set<NfaState> targets) {
+    if (!sequences.isEmpty()) {
+      edges.add(new Edge(from, sequences, targets));
+    }
+  }
+
+  /** Adds the 4-byte sequences of the code points of the high surrogates followed by the next. */
+  private static void addSurrogatePairEdges(
+      List<Edge> edges,
+      ICharsNumTable charTable,
+      NfaState from,
+      CharacterRange high,
+      NfaState next) {
+    var transitions = next.getTransitions();
+    for (int num = 1; num < transitions.length; num++) {
+      if (transitions[num] == null) {
+        continue;
+      }
+      var low =
+          intersect(
+              charTable.getCharRangeOfNum(num),
+              Character.MIN_LOW_SURROGATE,
+              Character.MAX_LOW_SURROGATE);
+      if (low == null) {
+        continue;
+      }
+      var sequences = new ArrayList<CharacterRange[]>();
+      if (low.from == Character.MIN_LOW_SURROGATE && low.to == Character.MAX_LOW_SURROGATE) {
+        sequences.addAll(
+            Utf8Sequences.of(
+                Character.toCodePoint(high.from, low.from),
+                Character.toCodePoint(high.to, low.to)));
+      } else {
+        for (int h = high.from; h <= high.to; h++) {
+          sequences.addAll(
+              Utf8Sequences.of(
+                  Character.toCodePoint((char) h, low.from),
+                  Character.toCodePoint((char) h, low.to)));
+        }
+      }
+      addEdge(edges, from, sequences, transitions[num]);
+    }
+  }
+
+  /** Returns the byte range sequences of the {@code from, to} pairs of code points. */
+  private static List<CharacterRange[]> sequencesOf(int[] ranges) {
+    var sequences = new ArrayList<CharacterRange[]>();
+    for (int i = 0; i < ranges.length; i += 2) {
+      sequences.addAll(Utf8Sequences.of(ranges[i], ranges[i + 1]));
+    }
+    return sequences;
+  }
+
+  private static CharacterRange intersect(CharacterRange range, char from, char to) {
+    var l = range.from > from ? range.from : from;
+    var r = range.to < to ? range.to : to;
+    return l <= r ? CharacterRange.of(l, r) : null;
+  }
+
+  /**
+   * Adds the chains of byte transitions from the state to the targets. The states of the common
+   * suffixes of the sequences are shared, also with the ones of other edges to the same targets.
+   * After the ε-closure has been removed, the final states of a loop like {@code \p{L}+} all have
+   * the edges of the loop, so sharing them keeps the supplementary code points from building the
+   * same chains once for every final state.
+   */
+  private static void addSequences(
+      Nfa byteNfa,
+      HashMap<Suffix, NfaState> suffixStates,
+      NfaState from,
+      List<CharacterRange[]> sequences,
+      List<NfaState> targets) {
+    var table = byteNfa.getCharsNumTable();
+    for (var sequence : sequences) {
+      List<NfaState> next = targets;
+      for (int i = sequence.length - 1; i > 0; i--) {
+        var key = new Suffix(List.of(Arrays.copyOfRange(sequence, i, sequence.length)), targets);
+        var state = suffixStates.get(key);
+        if (state == null) {
+          state = new NfaState(table.getTableSize());
+          addTransitions(table, state, sequence[i], next);
+          suffixStates.put(key, state);
+        }
+        next = List.of(state);
+      }
+      addTransitions(table, from, sequence[0], next);
+    }
+  }
+
+  private static void addTransitions(
+      ICharsNumTable table, NfaState from, CharacterRange range, List<NfaState> targets) {
+    var nums = table.getNumsOfCharRange(range).orElseThrow();
+    for (int num = nums.start; num <= nums.end; num++) {
+      from.addTransitions(num, targets);
+    }
+  }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.server;
+
+import com.nano.regexcv.Pass;
+import com.nano.regexcv.Pipelines;
+import com.nano.regexcv.dfa.Dfa2DigraphPass;
+import com.nano.regexcv.dfa.SubsetConstructionPass;
+import com.nano.regexcv.nfa.Nfa;
+import com.nano.regexcv.nfa.Nfa2DigraphPass;
+import com.nano.regexcv.syntax.RegexSyntaxErrorException;
+import com.nano.regexcv.util.Digraph;
+import com.nano.regexcv.util.DigraphDotGenerator;
+import com.nano.regexcv.util.Json;
+import com.nano.regexcv.util.MergingDigraphEdges;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A long-running server that converts regexes into digraphs for clients of a Unix domain socket, so
+ * tools that convert many regexes do not pay for the startup of a JVM each time.
+ *
+ * <p>The protocol is line based: every line that a client sends is a JSON object and the server
+ * answers it with one line of JSON.
+ *
+ * <pre>{@code
+ * > {"regex": "a|b", "mode": "min", "reduce": true}
+ * < {"ok": true, "dot": "digraph ..."}
+ * > {"regex": "(ab"}
+ * < {"ok": false, "error": "..."}
+ * }</pre>
+ *
+ * The mode is one of {@code nfa} (default), {@code dfa} and {@code min} for the minimized DFA, and
+ * {@code reduce} merges the edges of the digraph like the {@code -r} option. Every connection is
+ * served by its own virtual thread, and the outputs of the recently used requests are cached.
+ */
+public class CompileServer implements Closeable {
+
+  public static final int DEFAULT_CACHE_SIZE = 1024;
+
+  /** The maximum number of characters in a request line, longer requests are answered by errors. */
+  public static final int MAX_REQUEST_LENGTH = 1 << 20;
+
+  /** The regex that is converted in every mode when the server starts to warm up the JIT. */
+  private static final String WARM_UP_REGEX = "(\\w+@\\w+\\.(com|org))|[^a-z]*";
+
+  public enum Mode {
+    NFA,
+    DFA,
+    MIN
+  }
+
+  public record Request(String regex, Mode mode, boolean reduce) {
+
+    /**
+     * Parses a request line.
+     *
+     * @throws IllegalArgumentException if the line is not a valid request.
+     */
+    public static Request parse(String line) {
+      var object = Json.parseFlatObject(line);
+      if (!(object.get("regex") instanceof String regex)) {
+        throw new IllegalArgumentException("Missing string property: regex");
+      }
+      var mode = Mode.NFA;
+      if (object.get("mode") instanceof String name) {
+        try {
+          mode = Mode.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+          throw new IllegalArgumentException("Unknown mode: " + name);
+        }
+      } else if (object.get("mode") != null) {
+        throw new IllegalArgumentException("The mode must be a string");
+      }
+      var reduce = object.getOrDefault("reduce", false);
+      if (!(reduce instanceof Boolean)) {
+        throw new IllegalArgumentException("The reduce property must be a boolean");
+      }
+      return new Request(regex, mode, (Boolean) reduce);
+    }
+  }
+
+  /** Binds a server to the socket file, which must not exist. */
+  public static CompileServer bind(Path socket) throws IOException {
+    return bind(socket, DEFAULT_CACHE_SIZE);
+  }
+
+  public static CompileServer bind(Path socket, int cacheSize) throws IOException {
+    return bind(socket, cacheSize, CompileServer::convert);
+  }
+
+  /**
+   * @param converter The pass that returns the DOT code of a request. It must be safe to run it
+   *     concurrently.
+   */
+  public static CompileServer bind(Path socket, int cacheSize, Pass<Request, String> converter)
+      throws IOException {
+    var channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+    try {
+      channel.bind(UnixDomainSocketAddress.of(socket));
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    return new CompileServer(socket, channel, cacheSize, converter);
+  }
+
+  private final Path socket;
+  private final ServerSocketChannel channel;
+  private final Pass<Request, String> converter;
+
+  /** Guarded by itself. It is in access order, so the eldest entry is the least recently used. */
+  private final LinkedHashMap<Request, String> cache;
+
+  private CompileServer(
+      Path socket, ServerSocketChannel channel, int cacheSize, Pass<Request, String> converter) {
+    this.socket = socket;
+    this.channel = channel;
+    this.converter = converter;
+    this.cache =
+        new LinkedHashMap<>(16, .75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Request, String> eldest) {
+            return size() > cacheSize;
+          }
+        };
+  }
+
+  /** Converts a regex in every mode without caching it, so the first requests run compiled code. */
+  public void warmUp() {
+    for (var mode : Mode.values()) {
+      converter.accept(new Request(WARM_UP_REGEX, mode, true));
+    }
+  }
+
+  /** Accepts and serves connections until the server is closed. */
+  public void serve() throws IOException {
+    while (true) {
+      SocketChannel client;
+      try {
+        client = channel.accept();
+      } catch (ClosedChannelException e) {
+        return;
+      }
+      Thread.ofVirtual().name("regexcv-client").start(() -> serveClient(client));
+    }
+  }
+
+  private void serveClient(SocketChannel client) {
+    try (client;
+        var reader =
+            new BufferedReader(
+                new InputStreamReader(Channels.newInputStream(client), StandardCharsets.UTF_8));
+        var writer =
+            new BufferedWriter(
+                new OutputStreamWriter(Channels.newOutputStream(client), StandardCharsets.UTF_8))) {
+      var line = new StringBuilder();
+      while (readLine(reader, line)) {
+        String response;
+        if (line.length() > MAX_REQUEST_LENGTH) {
+          response =
+              errorResponse("The request is longer than " + MAX_REQUEST_LENGTH + " characters");
+        } else if (line.toString().isBlank()) {
+          continue;
+        } else {
+          response = handle(line.toString());
+        }
+        writer.write(response);
+        writer.write('\n');
+        writer.flush();
+      }
+    } catch (IOException e) {
+      // The client has gone away, there is no one to report it to.
+    }
+  }
+
+  /**
+   * Reads a line without its terminator into the builder, keeping only the first {@code
+   * MAX_REQUEST_LENGTH + 1} characters so a client cannot make the line grow without bound.
+   *
+   * @return false at the end of the stream.
+   */
+  private static boolean readLine(Reader reader, StringBuilder line) throws IOException {
+    line.setLength(0);
+    int ch;
+    boolean read = false;
+    while ((ch = reader.read()) != -1) {
+      read = true;
+      if (ch == '\n') {
+        break;
+      }
+      if (line.length() <= MAX_REQUEST_LENGTH) {
+        line.append((char) ch);
+      }
+    }
+    if (!line.isEmpty()
+        && line.length() <= MAX_REQUEST_LENGTH
+        && line.charAt(line.length() - 1) == '\r') {
+      line.setLength(line.length() - 1);
+    }
+    return read;
+  }
+
+  /** Returns the response line of a request line. */
+  public String handle(String line) {
+    Request request;
+    try {
+      request = Request.parse(line);
+    } catch (IllegalArgumentException e) {
+      return errorResponse(e.getMessage());
+    }
+    String dot;
+    synchronized (cache) {
+      dot = cache.get(request);
+    }
+    if (dot == null) {
+      try {
+        dot = converter.accept(request);
+      } catch (RegexSyntaxErrorException e) {
+        return errorResponse(e.getMessage());
+      } catch (RuntimeException e) {
+        // A bug in a pass must not close the connection, the next request may succeed.
+        return errorResponse(e.toString());
+      }
+      synchronized (cache) {
+        cache.put(request, dot);
+      }
+    }
+    return "{\"ok\": true, \"dot\": " + Json.quote(dot) + "}";
+  }
+
+  private static String errorResponse(String message) {
+    return "{\"ok\": false, \"error\": " + Json.quote(String.valueOf(message)) + "}";
+  }
+
+  /** Returns the DOT code of the requested digraph. Passes keep state, so they are not shared. */
+  private static String convert(Request request) {
+    var regex = request.regex();
+    var stages = Pipelines.recorded(regex, null);
+    Pass<Nfa, Digraph> digraph =
+        switch (request.mode()) {
+          case NFA -> stages.wrap("nfa-digraph", new Nfa2DigraphPass());
+          case DFA ->
+              stages
+                  .wrap("subset-construction", new SubsetConstructionPass())
+                  .next(stages.wrap("dfa-digraph", new Dfa2DigraphPass()));
+          case MIN ->
+              Pipelines.nfaToDfa(stages).next(stages.wrap("dfa-digraph", new Dfa2DigraphPass()));
+        };
+    if (request.reduce()) {
+      digraph = digraph.next(stages.wrap("merging-edges", new MergingDigraphEdges()));
+    }
+    return Pipelines.nfa(stages)
+        .next(digraph)
+        .next(stages.wrap("dot-generation", new DigraphDotGenerator()))
+        .accept(regex);
+  }
+
+  public Path getSocket() {
+    return socket;
+  }
+
+  /** Stops accepting connections and deletes the socket file. */
+  @Override
+  public void close() throws IOException {
+    try {
+      channel.close();
+    } finally {
+      Files.deleteIfExists(socket);
+    }
+  }
+}
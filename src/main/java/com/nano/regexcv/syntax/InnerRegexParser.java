@@ -16,40 +16,76 @@
 package com.nano.regexcv.syntax;
 
 import com.nano.regexcv.syntax.tree.RAlternation;
-import com.nano.regexcv.syntax.tree.RCharRange;
 import com.nano.regexcv.syntax.tree.RCharRangeList;
+import com.nano.regexcv.syntax.tree.RCodePointClass;
 import com.nano.regexcv.syntax.tree.RContatenation;
 import com.nano.regexcv.syntax.tree.REmpty;
 import com.nano.regexcv.syntax.tree.ROneOrMore;
 import com.nano.regexcv.syntax.tree.ROptional;
 import com.nano.regexcv.syntax.tree.RSingleCharacter;
+import com.nano.regexcv.syntax.tree.RTreeInterner;
 import com.nano.regexcv.syntax.tree.RZeroOrMore;
 import com.nano.regexcv.syntax.tree.RegularExpression;
 import com.nano.regexcv.util.CharacterRange;
 import com.nano.regexcv.util.CharacterRanges;
+import com.nano.regexcv.util.CodePointRanges;
+import com.nano.regexcv.util.UnicodeProperties;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class InnerRegexParser {
 
-  private static final CharacterRange[] WORD_RANGES = CharacterRanges.parse("a-zA-Z0-9_");
-  private static final CharacterRange[] NON_WORD_RANGES = CharacterRanges.parse("^a-zA-Z0-9_");
-  private static final CharacterRange[] DIGIT_RANGES = CharacterRanges.parse("0-9");
-  private static final CharacterRange[] NON_DIGIT_RANGES = CharacterRanges.parse("^0-9");
-  private static final CharacterRange[] SPACE_RANGES = CharacterRanges.parse(" \n\r\f\t");
-  private static final CharacterRange[] NON_SPACE_RANGES = CharacterRanges.parse("^ \n\r\f\t");
+  private static final int[] WORD_RANGES = codePoints("a-zA-Z0-9_");
+  private static final int[] NON_WORD_RANGES = CodePointRanges.complement(WORD_RANGES);
+  private static final int[] DIGIT_RANGES = codePoints("0-9");
+  private static final int[] NON_DIGIT_RANGES = CodePointRanges.complement(DIGIT_RANGES);
+  private static final int[] SPACE_RANGES = codePoints(" \n\r\f\t");
+  private static final int[] NON_SPACE_RANGES = CodePointRanges.complement(SPACE_RANGES);
+
+  // Nodes are immutable, so the nodes of the predefined classes and of ASCII characters are shared
+  // by all trees instead of being built for every occurrence.
+  private static final RegularExpression WORD = newCodePointClass(WORD_RANGES, null);
+  private static final RegularExpression NON_WORD = newCodePointClass(NON_WORD_RANGES, null);
+  private static final RegularExpression DIGIT = newCodePointClass(DIGIT_RANGES, null);
+  private static final RegularExpression NON_DIGIT = newCodePointClass(NON_DIGIT_RANGES, null);
+  private static final RegularExpression SPACE = newCodePointClass(SPACE_RANGES, null);
+  private static final RegularExpression NON_SPACE = newCodePointClass(NON_SPACE_RANGES, null);
+  private static final RegularExpression ANY =
+      newCodePointClass(CodePointRanges.complement(new int[0]), null);
+  private static final RSingleCharacter[] ASCII_CHARS = new RSingleCharacter[128];
+
+  static {
+    for (char ch = 0; ch < ASCII_CHARS.length; ch++) {
+      ASCII_CHARS[ch] = new RSingleCharacter(ch);
+    }
+  }
+
+  private record PropertyClass(UnicodeProperties.Property property, boolean negated) {}
+
+  /**
+   * The nodes of the property classes that have been parsed. They are keyed by the resolved
+   * property, so every name of a property shares one node and the map stays bounded.
+   */
+  private static final ConcurrentHashMap<PropertyClass, RegularExpression> PROPERTY_CLASSES =
+      new ConcurrentHashMap<>();
 
   private static final char EOF = (char) -1;
 
   private int p;
-  private char[] chars;
+  private final CharSequence chars;
+  private final int length;
   private char ch;
 
+  /** Every node of the tree is interned, so repeated subexpressions share their nodes. */
+  private final RTreeInterner interner = new RTreeInterner();
+
   protected InnerRegexParser(CharSequence regex) {
     this.p = 0;
     this.ch = 0;
-    this.chars = regex.toString().toCharArray();
+    this.chars = regex;
+    this.length = regex.length();
     advance();
   }
 
@@ -58,11 +94,11 @@ public class InnerRegexParser {
   }
 
   private void advance() {
-    if (this.p == this.chars.length) {
+    if (this.p == this.length) {
       ch = EOF;
       return;
     }
-    ch = chars[p++];
+    ch = chars.charAt(p++);
   }
 
   private boolean isEnd() {
@@ -87,16 +123,41 @@ public class InnerRegexParser {
 
   // Factory Methods
 
-  private RCharRangeList newCharRangeList(CharacterRange... ranges) {
-    return new RCharRangeList(false, ranges);
+  private RSingleCharacter newCharExpr(char ch) {
+    return newCharExpr(ch, interner);
+  }
+
+  private static RSingleCharacter newCharExpr(char ch, RTreeInterner interner) {
+    // The shared ASCII nodes are the only nodes of their characters, so they need no interning.
+    if (ch < ASCII_CHARS.length) {
+      return ASCII_CHARS[ch];
+    }
+    return intern(new RSingleCharacter(ch), interner);
   }
 
-  private RCharRange newCharRange(char from, char to) {
-    return new RCharRange(from, to);
+  /** Interns the node, unless the interner is null because the node is built for all trees. */
+  private static <T extends RegularExpression> T intern(T node, RTreeInterner interner) {
+    return interner != null ? interner.intern(node) : node;
   }
 
-  private RSingleCharacter newCharExpr(char ch) {
-    return new RSingleCharacter(ch);
+  private static int[] codePoints(String ranges) {
+    return new CodePointRanges().addAll(CharacterRanges.parse(ranges)).toArray();
+  }
+
+  /**
+   * Returns the node of the sorted and merged code point ranges: an {@link RCharRangeList} if they
+   * are all chars, or else an {@link RCodePointClass}, which keeps the ranges for UTF-8 and is
+   * matched as surrogate pairs over UTF-16.
+   */
+  private static RegularExpression newCodePointClass(int[] ranges, RTreeInterner interner) {
+    if (ranges.length > 0 && ranges[ranges.length - 1] >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+      return intern(new RCodePointClass(ranges), interner);
+    }
+    var chars = new ArrayList<CharacterRange>(ranges.length / 2);
+    for (int i = 0; i < ranges.length; i += 2) {
+      chars.add(CharacterRange.of((char) ranges[i], (char) ranges[i + 1]));
+    }
+    return intern(new RCharRangeList(false, chars), interner);
   }
 
   // Parsing Methods
@@ -109,54 +170,88 @@ public class InnerRegexParser {
     return regex;
   }
 
-  /**
-   * Parses a regular expression.
-   *
-   * <p>A regular expression is represented as the concatenation of multiple subexpressions.
-   */
-  protected RegularExpression parseRegex() {
-    return parseConcatenation();
-  }
-
-  /** Parses one or more concatenation expressions. */
-  private RegularExpression parseConcatenation() {
-    LinkedList<RegularExpression> concatenation = new LinkedList<>();
-    while (!isEnd() && ch != ')') {
-      concatenation.add(parseAlternation());
-    }
-    if (concatenation.isEmpty()) {
-      return new REmpty();
+  /** A parenthesis expression whose closing ')' has not been parsed yet. */
+  private static class Group {
+    private final ArrayList<RegularExpression> concatenation = new ArrayList<>();
+
+    /** The alternatives before the last '|', or null if no '|' has been parsed. */
+    private ArrayList<RegularExpression> alternation;
+
+    /** Adds the alternation that ends with the given term to the concatenation. */
+    private void endAlternation(RegularExpression term, RTreeInterner interner) {
+      if (alternation == null) {
+        concatenation.add(term);
+        return;
+      }
+      alternation.add(term);
+      concatenation.add(interner.intern(new RAlternation(alternation)));
+      alternation = null;
     }
-    if (concatenation.size() == 1) {
-      return concatenation.get(0);
+
+    private RegularExpression toRegex(RTreeInterner interner) {
+      if (concatenation.isEmpty()) {
+        return interner.intern(new REmpty());
+      }
+      if (concatenation.size() == 1) {
+        return concatenation.get(0);
+      }
+      return interner.intern(new RContatenation(concatenation));
     }
-    return new RContatenation(concatenation);
   }
 
   /**
-   * Parses one or more alternation expressions.
+   * Parses a regular expression.
+   *
+   * <p>A regular expression is represented as the concatenation of multiple subexpressions.
+   * Parenthesis expressions are kept on an explicit stack instead of the call stack, so the depth
+   * of nested parentheses is only limited by the heap.
    *
    * <pre>{@code
-   * Syntax: [ Term ] ( '|' [ Term ] )*
+   * Syntax:
+   *   Regex       = Alternation*
+   *   Alternation = [ Term ] ( '|' [ Term ] )*
    * }</pre>
    */
-  private RegularExpression parseAlternation() {
-    var list = new ArrayList<RegularExpression>();
-    list.add(parseOptionalTerm());
-    while (got('|')) {
-      list.add(parseOptionalTerm());
-    }
-    if (list.size() == 1) {
-      return list.get(0);
+  protected RegularExpression parseRegex() {
+    var groups = new ArrayDeque<Group>();
+    var group = new Group();
+    // Whether an optional term of an alternation is expected after '|'.
+    var expectsTerm = false;
+    while (true) {
+      if (!expectsTerm && (isEnd() || ch == ')')) {
+        var regex = group.toRegex(interner);
+        if (groups.isEmpty()) {
+          return regex;
+        }
+        match(')', "Parenthesis expression missing closing ')'.");
+        group = groups.pop();
+        expectsTerm = addTerm(group, parseQuantifier(regex));
+      } else if (ch == ')' || ch == '|' || isEnd()) {
+        expectsTerm = addTerm(group, interner.intern(new REmpty()));
+      } else if (got('(')) {
+        groups.push(group);
+        group = new Group();
+        expectsTerm = false;
+      } else {
+        expectsTerm = addTerm(group, parseTerm());
+      }
     }
-    return new RAlternation(list);
   }
 
-  private RegularExpression parseOptionalTerm() {
-    if (this.ch == ')' || this.ch == '|' || isEnd()) {
-      return new REmpty();
+  /**
+   * Adds a term to the alternation of the group and returns true if the alternation is continued by
+   * '|'.
+   */
+  private boolean addTerm(Group group, RegularExpression term) {
+    if (got('|')) {
+      if (group.alternation == null) {
+        group.alternation = new ArrayList<>();
+      }
+      group.alternation.add(term);
+      return true;
     }
-    return parseTerm();
+    group.endAlternation(term, interner);
+    return false;
   }
 
   /**
@@ -164,24 +259,17 @@ public class InnerRegexParser {
    *
    * <pre>{@code
    * Syntax:
-   *  (  '(' Regex ')'              # Parenthesis expression
-   *   | Character Class            # Like [abc-f]
+   *  (  Character Class            # Like [abc-f]
    *   | '.'                        # Any character
    *   | Character                  # Escape char or literal char.
    *  ) Quantifier
    * }</pre>
+   *
+   * Parenthesis expressions are parsed by {@link #parseRegex()}.
    */
   private RegularExpression parseTerm() {
     RegularExpression regex = null;
     switch (ch) {
-      case '(':
-        {
-          advance();
-          regex = parseRegex();
-          match(')', "Parenthesis expression missing closing ')'.");
-          break;
-        }
-
       case '[':
         {
           advance();
@@ -192,7 +280,7 @@ public class InnerRegexParser {
       case '.':
         {
           advance();
-          regex = newCharRange(Character.MIN_VALUE, Character.MAX_VALUE);
+          regex = ANY;
           break;
         }
 
@@ -216,91 +304,229 @@ public class InnerRegexParser {
 
       default:
         {
-          regex = parseChar();
+          var term = parseAtom();
+          // Interning a shared class makes it equal to the same class written in brackets.
+          regex = term instanceof RCharRangeList ? interner.intern(term) : term;
         }
     }
     return parseQuantifier(regex);
   }
 
   /**
-   * Parses a character class.
+   * Parses a character class. Its code points are collected before they are turned into a node, so
+   * a negated class is the complement of the code points instead of the chars.
    *
    * <pre>{@code
    * Syntax: '[' CharRange* ']'
    * }</pre>
    */
-  private RCharRangeList parseCharClass() {
-    List<CharacterRange> ranges = new ArrayList<>();
+  private RegularExpression parseCharClass() {
+    var ranges = new CodePointRanges();
     var negated = got('^');
     while (this.ch != ']' && this.ch != EOF) {
-      var termExpr = parseCharRange();
-      ranges.addAll(termExpr.toCharRangeList());
+      parseCharRange(ranges);
     }
     match(']', "Character class missing closing bracket.");
-    return new RCharRangeList(negated, ranges);
+    var codePoints = ranges.toArray();
+    if (negated) {
+      codePoints = CodePointRanges.complement(codePoints);
+    }
+    return newCodePointClass(codePoints, interner);
   }
 
-  /** Parses a character range expression such as {@code a-z} or {@code 0-9}. */
-  private RegularExpression.TermExpr parseCharRange() {
-    var left = parseChar();
+  /**
+   * Parses a character range expression such as {@code a-z} or {@code 0-9} and adds its ranges to
+   * the set.
+   */
+  private void parseCharRange(CodePointRanges ranges) {
+    var start = parseClassAtom(ranges);
     // Support syntax '[\w-a]'
-    if (!checkIsChar(left) || !got('-')) {
-      return left;
+    if (start < 0 || !got('-')) {
+      if (start >= 0) {
+        ranges.add(start);
+      }
+      return;
     }
-    char startCh = ((RSingleCharacter) left).getChar();
     // Support syntax '[a-]'
     if (this.ch == ']') {
-      return new RCharRangeList(false, startCh, '-');
+      ranges.add(start).add('-');
+      return;
     }
-    var right = parseChar();
+    var end = parseClassAtom(ranges);
     // Support syntax '[a-\w]'
-    if (!checkIsChar(right)) {
-      return new RCharRangeList(false, left, newCharExpr('-'), right);
+    if (end < 0) {
+      ranges.add(start).add('-');
+      return;
     }
-    char endCh = ((RSingleCharacter) right).getChar();
-    if (endCh < startCh) {
+    if (end < start) {
       error("Range out of order in character class.");
     }
-    return newCharRange(startCh, endCh);
+    ranges.add(start, end);
   }
 
-  private boolean checkIsChar(RegularExpression expr) {
-    return expr instanceof RSingleCharacter;
+  /**
+   * Parses an escape sequence or a literal code point in a character class. The code points of a
+   * class escape are added to the set and -1 is returned, otherwise the code point is returned.
+   */
+  private int parseClassAtom(CodePointRanges ranges) {
+    if (!got('\\')) {
+      return parseCodePoint();
+    }
+    if (this.ch == 'p' || this.ch == 'P') {
+      var negated = this.ch == 'P';
+      ranges.addAll(propertyRanges(negated, parseProperty()));
+      return -1;
+    }
+    var predefined = predefinedRanges(this.ch);
+    if (predefined != null) {
+      advance();
+      ranges.addAll(predefined);
+      return -1;
+    }
+    return parseEscapeCharacter();
   }
 
-  /** Parses either an escape sequence or a literal character. */
-  private RegularExpression.TermExpr parseChar() {
+  /**
+   * Parses either an escape sequence or a literal code point outside of character classes. A
+   * predefined class is one of the shared nodes, which has not been interned.
+   */
+  private RegularExpression parseAtom() {
     if (got('\\')) {
-      return parseEscapeCharacter();
+      if (this.ch == 'p' || this.ch == 'P') {
+        return parsePropertyClass();
+      }
+      var predefined = predefinedClass(this.ch);
+      if (predefined != null) {
+        advance();
+        return predefined;
+      }
+      return newCharExpr(parseEscapeCharacter());
+    }
+    var cp = parseCodePoint();
+    if (cp <= Character.MAX_VALUE) {
+      return newCharExpr((char) cp);
     }
-    char ch = this.ch;
+    // The pair is one term, so a quantifier repeats the whole code point.
+    var pair =
+        List.<RegularExpression>of(
+            newCharExpr(Character.highSurrogate(cp)), newCharExpr(Character.lowSurrogate(cp)));
+    return interner.intern(new RContatenation(pair));
+  }
+
+  /** Parses a literal char, where a surrogate pair is the supplementary code point of it. */
+  private int parseCodePoint() {
+    var high = this.ch;
     advance();
-    return newCharExpr(ch);
+    if (Character.isHighSurrogate(high) && Character.isLowSurrogate(this.ch)) {
+      var low = this.ch;
+      advance();
+      return Character.toCodePoint(high, low);
+    }
+    return high;
   }
 
-  /** Parses a single escape sequence (for example, {@code \w} or {@code \n}). */
-  private RegularExpression.TermExpr parseEscapeCharacter() {
-    var regex =
+  private static int[] predefinedRanges(char escape) {
+    return switch (escape) {
+      case 'w' -> WORD_RANGES;
+      case 'W' -> NON_WORD_RANGES;
+      case 's' -> SPACE_RANGES;
+      case 'S' -> NON_SPACE_RANGES;
+      case 'd' -> DIGIT_RANGES;
+      case 'D' -> NON_DIGIT_RANGES;
+      default -> null;
+    };
+  }
+
+  private static RegularExpression predefinedClass(char escape) {
+    return switch (escape) {
+      case 'w' -> WORD;
+      case 'W' -> NON_WORD;
+      case 's' -> SPACE;
+      case 'S' -> NON_SPACE;
+      case 'd' -> DIGIT;
+      case 'D' -> NON_DIGIT;
+      default -> null;
+    };
+  }
+
+  /** Parses the char of a single escape sequence (for example, {@code \n} or {@code \.}). */
+  private char parseEscapeCharacter() {
+    var escaped =
         switch (this.ch) {
-          case 'w' -> newCharRangeList(WORD_RANGES);
-          case 'W' -> newCharRangeList(NON_WORD_RANGES);
-          case 's' -> newCharRangeList(SPACE_RANGES);
-          case 'S' -> newCharRangeList(NON_SPACE_RANGES);
-          case 'd' -> newCharRangeList(DIGIT_RANGES);
-          case 'D' -> newCharRangeList(NON_DIGIT_RANGES);
-          case 'n' -> newCharExpr('\n');
-          case 'r' -> newCharExpr('\r');
-          case 'f' -> newCharExpr('\f');
-          case 't' -> newCharExpr('\t');
-          case 'b' -> newCharExpr('\b');
-          case '\\', '.', '(', ')', '[', ']', '*', '+', '?', '|' -> newCharExpr(ch);
+          case 'n' -> '\n';
+          case 'r' -> '\r';
+          case 'f' -> '\f';
+          case 't' -> '\t';
+          case 'b' -> '\b';
+          case '\\', '.', '(', ')', '[', ']', '*', '+', '?', '|' -> ch;
           default -> {
             error("Illegal escape character '" + ch + "'.");
-            yield null;
+            yield ch;
           }
         };
     advance();
-    return regex;
+    return escaped;
+  }
+
+  /**
+   * Parses a Unicode property class such as {@code \p{Lu}}, {@code \pL} or {@code \P{IsGreek}}. The
+   * node of a property is shared by all trees, so its ranges are computed and split into surrogate
+   * pairs only once.
+   */
+  private RegularExpression parsePropertyClass() {
+    var negated = this.ch == 'P';
+    var key = new PropertyClass(parseProperty(), negated);
+    var node = PROPERTY_CLASSES.get(key);
+    if (node == null) {
+      node = newCodePointClass(propertyRanges(negated, key.property()), null);
+      var previous = PROPERTY_CLASSES.putIfAbsent(key, node);
+      node = previous != null ? previous : node;
+    }
+    return node;
+  }
+
+  /**
+   * Parses the name of a property after {@code \p} or {@code \P}.
+   *
+   * <pre>{@code
+   * Syntax: ('p' | 'P') ( '{' Name '}' | Letter )
+   * }</pre>
+   */
+  private String parsePropertyName() {
+    advance();
+    if (got('{')) {
+      var start = p - 1;
+      while (this.ch != '}' && !isEnd()) {
+        advance();
+      }
+      if (isEnd()) {
+        error("Property class missing closing '}'.");
+      }
+      var name = chars.subSequence(start, p - 1).toString();
+      advance();
+      return name;
+    }
+    if (isEnd()) {
+      error("Unexpecting EOF.");
+    }
+    var name = String.valueOf(this.ch);
+    advance();
+    return name;
+  }
+
+  /** Parses the name of a property after {@code \p} or {@code \P} and resolves it. */
+  private UnicodeProperties.Property parseProperty() {
+    var name = parsePropertyName();
+    var property = UnicodeProperties.forName(name);
+    if (property == null) {
+      error("Unknown property '%s'.", name);
+    }
+    return property;
+  }
+
+  private static int[] propertyRanges(boolean negated, UnicodeProperties.Property property) {
+    var ranges = UnicodeProperties.rangesOf(property);
+    return negated ? CodePointRanges.complement(ranges) : ranges;
   }
 
   /** Parses an optional quantifier for the previously parsed term. */
@@ -308,13 +534,13 @@ public class InnerRegexParser {
     switch (this.ch) {
       case '*':
         advance();
-        return new RZeroOrMore(regex);
+        return interner.intern(new RZeroOrMore(regex));
       case '+':
         advance();
-        return new ROneOrMore(regex);
+        return interner.intern(new ROneOrMore(regex));
       case '?':
         advance();
-        return new ROptional(regex);
+        return interner.intern(new ROptional(regex));
     }
     return regex;
   }
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.syntax;
+
+import com.nano.regexcv.Pass;
+import com.nano.regexcv.nfa.LiteralAutomaton;
+import com.nano.regexcv.nfa.RExpTree2NfaPass;
+import com.nano.regexcv.syntax.tree.RAlternation;
+import com.nano.regexcv.syntax.tree.RCharRange;
+import com.nano.regexcv.syntax.tree.RCharRangeList;
+import com.nano.regexcv.syntax.tree.RCodePointClass;
+import com.nano.regexcv.syntax.tree.RContatenation;
+import com.nano.regexcv.syntax.tree.REmpty;
+import com.nano.regexcv.syntax.tree.ROneOrMore;
+import com.nano.regexcv.syntax.tree.ROptional;
+import com.nano.regexcv.syntax.tree.RSingleCharacter;
+import com.nano.regexcv.syntax.tree.RTreeFolder;
+import com.nano.regexcv.syntax.tree.RTreeInterner;
+import com.nano.regexcv.syntax.tree.RTreeTraversal;
+import com.nano.regexcv.syntax.tree.RZeroOrMore;
+import com.nano.regexcv.syntax.tree.RegularExpression;
+import com.nano.regexcv.util.CharacterRange;
+import com.nano.regexcv.util.CodePointRanges;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites a syntax tree into a smaller tree that matches the same strings:
+ *
+ * <ul>
+ *   <li>Nested concatenations and alternations are flattened, and empty elements of concatenations
+ *       are removed.
+ *   <li>Alternatives that are characters or classes are merged into one class, so {@code
+ *       (a)|(b)|[0-9]} becomes {@code [ab0-9]}. Classes with supplementary code points are merged
+ *       into one {@link RCodePointClass}, so {@code \p{L}|\d} stays one class.
+ *   <li>Common literal prefixes of alternatives are factored out, so {@code (abc)|(abd)} becomes
+ *       {@code ab[cd]}.
+ *   <li>An alternation with an empty alternative becomes optional, and nested quantifiers are
+ *       collapsed, so {@code (a*)?} becomes {@code a*}.
+ * </ul>
+ *
+ * <p>Alternations of at least {@link RExpTree2NfaPass#LITERAL_AUTOMATON_THRESHOLD} literals are
+ * only flattened, because {@link RExpTree2NfaPass} builds them as minimal automata.
+ *
+ * <p>The nodes of the simplified tree are interned, so equal subtrees are still shared by the
+ * simplified tree, and a subtree that is shared by the input tree is only simplified once.
+ */
+public class RegexSimplifier
+    implements Pass<RegularExpression, RegularExpression>, RTreeFolder<RegularExpression> {
+
+  private RTreeInterner interner;
+
+  @Override
+  public RegularExpression accept(RegularExpression tree) {
+    interner = new RTreeInterner();
+    var result = RTreeTraversal.foldShared(tree, this);
+    interner = null;
+    return result;
+  }
+
+  @Override
+  public RegularExpression visit(RSingleCharacter node) {
+    return interner.intern(node);
+  }
+
+  @Override
+  public RegularExpression visit(RCharRange node) {
+    return interner.intern(node);
+  }
+
+  @Override
+  public RegularExpression visit(RCharRangeList node) {
+    return interner.intern(node);
+  }
+
+  @Override
+  public RegularExpression visit(RCodePointClass node) {
+    return interner.intern(node);
+  }
+
+  @Override
+  public RegularExpression visit(REmpty node) {
+    return interner.intern(node);
+  }
+
+  @Override
+  public RegularExpression visit(RContatenation node, List<RegularExpression> elements) {
+    return concatenationOf(elements);
+  }
+
+  @Override
+  public RegularExpression visit(RAlternation node, List<RegularExpression> alternatives) {
+    var flattened = new ArrayList<RegularExpression>(alternatives.size());
+    for (var alternative : alternatives) {
+      if (alternative instanceof RAlternation alternation) {
+        flattened.addAll(alternation.getRegexList());
+      } else {
+        flattened.add(alternative);
+      }
+    }
+    var alternation = new RAlternation(flattened);
+    if (flattened.isEmpty()
+        || flattened.size() >= RExpTree2NfaPass.LITERAL_AUTOMATON_THRESHOLD
+            && LiteralAutomaton.literalsOf(alternation) != null) {
+      return interner.intern(alternation);
+    }
+    return factorPrefixes(flattened);
+  }
+
+  @Override
+  public RegularExpression visit(ROneOrMore node, RegularExpression quantified) {
+    return switch (quantified) {
+      case REmpty empty -> empty;
+      case RZeroOrMore zeroOrMore -> zeroOrMore;
+      case ROneOrMore oneOrMore -> oneOrMore;
+      case ROptional optional -> interner.intern(new RZeroOrMore(optional.getQuiantifiedNode()));
+      default ->
+          interner.intern(
+              quantified == node.getQuiantifiedNode() ? node : new ROneOrMore(quantified));
+    };
+  }
+
+  @Override
+  public RegularExpression visit(ROptional node, RegularExpression quantified) {
+    return quantified == node.getQuiantifiedNode() ? optionalOf(node) : optionalOf(quantified);
+  }
+
+  @Override
+  public RegularExpression visit(RZeroOrMore node, RegularExpression quantified) {
+    return switch (quantified) {
+      case REmpty empty -> empty;
+      case RZeroOrMore zeroOrMore -> zeroOrMore;
+      case ROneOrMore oneOrMore -> interner.intern(new RZeroOrMore(oneOrMore.getQuiantifiedNode()));
+      case ROptional optional -> interner.intern(new RZeroOrMore(optional.getQuiantifiedNode()));
+      default ->
+          interner.intern(
+              quantified == node.getQuiantifiedNode() ? node : new RZeroOrMore(quantified));
+    };
+  }
+
+  /** Returns the given optional node if it can not be simplified, or else {@code (regex)?}. */
+  private RegularExpression optionalOf(RegularExpression regex) {
+    var quantified = regex instanceof ROptional optional ? optional.getQuiantifiedNode() : regex;
+    return switch (quantified) {
+      case REmpty empty -> empty;
+      case RZeroOrMore zeroOrMore -> zeroOrMore;
+      case ROptional optional -> optional;
+      case ROneOrMore oneOrMore -> interner.intern(new RZeroOrMore(oneOrMore.getQuiantifiedNode()));
+      default -> interner.intern(regex instanceof ROptional ? regex : new ROptional(regex));
+    };
+  }
+
+  /** Returns the concatenation of the elements without nested concatenations and empty strings. */
+  private RegularExpression concatenationOf(List<RegularExpression> elements) {
+    var flattened = new ArrayList<RegularExpression>(elements.size());
+    for (var element : elements) {
+      if (element instanceof RContatenation concatenation) {
+        flattened.addAll(concatenation.getRegexList());
+      } else if (!(element instanceof REmpty)) {
+        flattened.add(element);
+      }
+    }
+    return switch (flattened.size()) {
+      case 0 -> interner.intern(new REmpty());
+      case 1 -> flattened.get(0);
+      default -> interner.intern(new RContatenation(flattened));
+    };
+  }
+
+  /**
+   * Returns the alternation of the given alternatives, whose characters and classes are merged into
+   * one class. An empty alternative makes the alternation optional.
+   */
+  private RegularExpression alternationOf(List<RegularExpression> alternatives) {
+    var merged = new ArrayList<RegularExpression>(alternatives.size());
+    var terms = new ArrayList<RegularExpression.TermExpr>();
+    var codePointClasses = new ArrayList<RCodePointClass>();
+    var hasEmpty = false;
+    for (var alternative : alternatives) {
+      if (alternative instanceof REmpty) {
+        hasEmpty = true;
+      } else if (alternative instanceof RegularExpression.TermExpr term) {
+        terms.add(term);
+      } else if (alternative instanceof RCodePointClass codePointClass) {
+        codePointClasses.add(codePointClass);
+      } else {
+        merged.add(alternative);
+      }
+    }
+    if (codePointClasses.size() == 1 && terms.isEmpty()) {
+      merged.add(codePointClasses.get(0));
+    } else if (!codePointClasses.isEmpty()) {
+      var ranges = new CodePointRanges();
+      for (var term : terms) {
+        ranges.addAll(term.toCharRangeList().toArray(CharacterRange[]::new));
+      }
+      for (var codePointClass : codePointClasses) {
+        ranges.addAll(codePointClass.getCodePointRanges());
+      }
+      merged.add(interner.intern(new RCodePointClass(ranges.toArray())));
+    } else if (terms.size() == 1) {
+      merged.add(terms.get(0));
+    } else if (terms.size() > 1) {
+      merged.add(
+          interner.intern(
+              new RCharRangeList(false, terms.toArray(RegularExpression.TermExpr[]::new))));
+    }
+    var alternation =
+        switch (merged.size()) {
+          case 0 -> interner.intern(new REmpty());
+          case 1 -> merged.get(0);
+          default -> interner.intern(new RAlternation(merged));
+        };
+    return hasEmpty ? optionalOf(alternation) : alternation;
+  }
+
+  /** A node of the trie of the literal prefixes of alternatives. */
+  private static class PrefixNode {
+    private final Map<Character, PrefixNode> children = new LinkedHashMap<>();
+
+    /** The rest of the alternatives that have the path to this node as their literal prefix. */
+    private final List<RegularExpression> rests = new ArrayList<>();
+  }
+
+  /** A node of the trie whose children are being converted. */
+  private static class PrefixFrame {
+    private final StringBuilder prefix = new StringBuilder();
+    private final List<RegularExpression> alternatives;
+    private final Iterator<Map.Entry<Character, PrefixNode>> edges;
+
+    /** Follows the path from the node while it does not branch, the chars of it are the prefix. */
+    public PrefixFrame(char ch, PrefixNode node) {
+      prefix.append(ch);
+      while (node.rests.isEmpty() && node.children.size() == 1) {
+        var edge = node.children.entrySet().iterator().next();
+        prefix.append(edge.getKey().charValue());
+        node = edge.getValue();
+      }
+      this.alternatives = new ArrayList<>(node.rests);
+      this.edges = node.children.entrySet().iterator();
+    }
+
+    public PrefixFrame(PrefixNode root) {
+      this.alternatives = new ArrayList<>(root.rests);
+      this.edges = root.children.entrySet().iterator();
+    }
+  }
+
+  /**
+   * Inserts the literal prefixes of the alternatives into a trie, and converts the trie back into
+   * nested alternations in post-order, so that every common prefix is matched only once.
+   */
+  private RegularExpression factorPrefixes(List<RegularExpression> alternatives) {
+    var root = new PrefixNode();
+    for (var alternative : alternatives) {
+      var elements =
+          alternative instanceof RContatenation concatenation
+              ? concatenation.getRegexList()
+              : List.of(alternative);
+      var node = root;
+      var i = 0;
+      for (; i < elements.size() && elements.get(i) instanceof RSingleCharacter ch; i++) {
+        node = node.children.computeIfAbsent(ch.getChar(), k -> new PrefixNode());
+      }
+      node.rests.add(concatenationOf(elements.subList(i, elements.size())));
+    }
+
+    var frames = new ArrayDeque<PrefixFrame>();
+    frames.push(new PrefixFrame(root));
+    while (true) {
+      var frame = frames.peek();
+      if (frame.edges.hasNext()) {
+        var edge = frame.edges.next();
+        frames.push(new PrefixFrame(edge.getKey(), edge.getValue()));
+        continue;
+      }
+      frames.pop();
+      // The prefix followed by the alternation of the converted children.
+      var elements = new ArrayList<RegularExpression>(frame.prefix.length() + 1);
+      for (int i = 0; i < frame.prefix.length(); i++) {
+        elements.add(interner.intern(new RSingleCharacter(frame.prefix.charAt(i))));
+      }
+      elements.add(alternationOf(frame.alternatives));
+      var regex = concatenationOf(elements);
+      if (frames.isEmpty()) {
+        return regex;
+      }
+      frames.peek().alternatives.add(regex);
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.syntax.tree;
+
+import com.nano.regexcv.util.CharacterRange;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * A class of code points that includes supplementary code points, such as {@code [😀-😎]}, {@code
+ * .} or {@code \p{L}}. A class of chars only is an {@link RCharRangeList}.
+ *
+ * <p>The code point ranges are kept as they are, so an automaton over the bytes of UTF-8 can encode
+ * them directly. An automaton over UTF-16 chars matches the tree of {@link #toUtf16()} instead,
+ * where a supplementary code point is its surrogate pair.
+ */
+public class RCodePointClass extends RegularExpression {
+
+  private final int[] codePointRanges;
+
+  /** The tree of the surrogate pairs, built the first time it is used. */
+  private volatile RegularExpression utf16;
+
+  /**
+   * @param codePointRanges The sorted and merged {@code from, to} pairs of code points, as the ones
+   *     of {@link com.nano.regexcv.util.CodePointRanges}. The array must not be modified.
+   */
+  public RCodePointClass(int[] codePointRanges) {
+    this.codePointRanges = codePointRanges;
+  }
+
+  /** Returns the sorted and merged {@code from, to} pairs. The array must not be modified. */
+  public int[] getCodePointRanges() {
+    return codePointRanges;
+  }
+
+  /**
+   * Returns the tree that matches the UTF-16 chars of the code points.
+   *
+   * <p>The BMP chars of the ranges are one class. A supplementary code point is matched as its
+   * surrogate pair. The high surrogates that are followed by the same low surrogates are one
+   * sequence, so the number of alternatives is the number of different sets of low surrogates
+   * instead of the number of ranges:
+   *
+   * <pre>{@code
+   * Input: U+1F600-U+1F64F
+   * Output: D83D[DE00-DE4F]
+   * Input: U+10000-U+10FFFF
+   * Output: [D800-DBFF][DC00-DFFF]
+   * Input: U+1F000-U+1F9FF, U+20000-U+203FF
+   * Output: [D83C-D83D D840][DC00-DFFF] | D83E[DC00-DDFF]
+   * }</pre>
+   */
+  public RegularExpression toUtf16() {
+    var tree = utf16;
+    if (tree == null) {
+      tree = utf16 = surrogatePairsOf(codePointRanges);
+    }
+    return tree;
+  }
+
+  private static RegularExpression surrogatePairsOf(int[] ranges) {
+    var chars = new ArrayList<CharacterRange>();
+    // The low surrogate ranges that follow each high surrogate.
+    var lowsOfHighs = new HashMap<Character, ArrayList<CharacterRange>>();
+    for (int i = 0; i < ranges.length; i += 2) {
+      var from = ranges[i];
+      var to = ranges[i + 1];
+      if (from < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+        chars.add(CharacterRange.of((char) from, (char) Math.min(to, Character.MAX_VALUE)));
+        from = Character.MIN_SUPPLEMENTARY_CODE_POINT;
+      }
+      for (var cp = from; cp <= to; ) {
+        var high = Character.highSurrogate(cp);
+        var last = Math.min(to, Character.toCodePoint(high, Character.MAX_LOW_SURROGATE));
+        lowsOfHighs
+            .computeIfAbsent(high, k -> new ArrayList<>())
+            .add(CharacterRange.of(Character.lowSurrogate(cp), Character.lowSurrogate(last)));
+        cp = last + 1;
+      }
+    }
+    // The high surrogates of each set of low surrogates.
+    var highsOfLows = new LinkedHashMap<List<CharacterRange>, ArrayList<CharacterRange>>();
+    for (char high = Character.MIN_HIGH_SURROGATE; high <= Character.MAX_HIGH_SURROGATE; high++) {
+      var lows = lowsOfHighs.get(high);
+      if (lows != null) {
+        highsOfLows.computeIfAbsent(lows, k -> new ArrayList<>()).add(CharacterRange.of(high));
+      }
+    }
+
+    var alternatives = new ArrayList<RegularExpression>();
+    if (!chars.isEmpty() || highsOfLows.isEmpty()) {
+      alternatives.add(new RCharRangeList(false, chars));
+    }
+    for (var entry : highsOfLows.entrySet()) {
+      alternatives.add(
+          new RContatenation(List.of(charClassOf(entry.getValue()), charClassOf(entry.getKey()))));
+    }
+    return alternatives.size() == 1 ? alternatives.get(0) : new RAlternation(alternatives);
+  }
+
+  private static RegularExpression charClassOf(List<CharacterRange> ranges) {
+    var range = ranges.get(0);
+    if (ranges.size() == 1 && range.from == range.to) {
+      return new RSingleCharacter(range.from);
+    }
+    return new RCharRangeList(false, ranges);
+  }
+
+  @Override
+  public <Out> Out accept(RTreeVisitor<Out> visitor) {
+    return visitor.visit(this);
+  }
+}
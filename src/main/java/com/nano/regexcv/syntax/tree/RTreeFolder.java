@@ -0,0 +1,58 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.syntax.tree;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A visitor that receives the results of the children of a node together with the node, so that a
+ * tree can be folded by {@link RTreeTraversal#fold} without recursion.
+ *
+ * <p>Unlike an {@link RTreeVisitor}, a folder never visits the children itself. The results are in
+ * the same order as the children of the node.
+ */
+public interface RTreeFolder<Out> {
+
+  /**
+   * Returns the result of the whole subtree of the node, or empty if its children should be folded
+   * and the node visited as usual. A folder overrides it to replace the construction of a kind of
+   * subtree with a cheaper one, its children are not visited then.
+   */
+  public default Optional<Out> visitSubtree(RegularExpression node) {
+    return Optional.empty();
+  }
+
+  public Out visit(RSingleCharacter node);
+
+  public Out visit(RCharRange node);
+
+  public Out visit(RCharRangeList node);
+
+  public Out visit(RCodePointClass node);
+
+  public Out visit(RAlternation node, List<Out> alternatives);
+
+  public Out visit(RContatenation node, List<Out> elements);
+
+  public Out visit(REmpty node);
+
+  public Out visit(ROneOrMore node, Out quantified);
+
+  public Out visit(ROptional node, Out quantified);
+
+  public Out visit(RZeroOrMore node, Out quantified);
+}
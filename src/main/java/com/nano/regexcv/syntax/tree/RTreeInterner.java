@@ -0,0 +1,75 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.syntax.tree;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Interns regex nodes, so that structurally equal subtrees are represented by the same node.
+ *
+ * <p>A node must be interned after its children, so its children are already canonical and two
+ * nodes are equal iff they have the same type, the same characters and the same children by
+ * identity. Comparing them never descends into the subtrees, so interning is linear in the size of
+ * the tree however deep it is.
+ *
+ * <p>Nodes are never mutated once they are built, so a canonical node may have several parents. A
+ * pass that visits every parent of a shared subtree can fold it only once with {@link
+ * RTreeTraversal#foldShared}.
+ */
+public class RTreeInterner {
+
+  /** The shallow identity of a node whose children are canonical. */
+  private static record Key(Class<?> type, Object value, List<RegularExpression> children) {}
+
+  private final HashMap<Key, RegularExpression> nodes = new HashMap<>();
+
+  /**
+   * Returns the canonical node that is equal to the given node. The children of the node must have
+   * been interned by this interner.
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends RegularExpression> T intern(T node) {
+    var key =
+        switch (node) {
+          case RSingleCharacter ch -> new Key(RSingleCharacter.class, ch.getChar(), List.of());
+          case RCharRange range ->
+              new Key(
+                  RCharRange.class, (int) range.getFromChar() << 16 | range.getToChar(), List.of());
+          case RCharRangeList list ->
+              new Key(
+                  RCharRangeList.class,
+                  List.of(list.isNegated(), Arrays.asList(list.getCharacterRanges())),
+                  List.of());
+          case RCodePointClass codePoints ->
+              new Key(
+                  RCodePointClass.class,
+                  // A buffer compares the contents of the array.
+                  IntBuffer.wrap(codePoints.getCodePointRanges()),
+                  List.of());
+          case REmpty empty -> new Key(REmpty.class, null, List.of());
+          default -> new Key(node.getClass(), null, RTreeTraversal.children(node));
+        };
+    return (T) nodes.computeIfAbsent(key, k -> node);
+  }
+
+  /** Returns the number of distinct nodes that have been interned. */
+  public int size() {
+    return nodes.size();
+  }
+}
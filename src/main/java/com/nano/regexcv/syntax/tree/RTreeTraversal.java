@@ -0,0 +1,138 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.syntax.tree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Iterative traversals of regex trees. They keep their own stack on the heap, so a tree that is
+ * nested thousands of levels deep does not overflow the thread stack.
+ */
+public class RTreeTraversal {
+
+  /** Returns the children of the node in order. A leaf has no children. */
+  public static List<RegularExpression> children(RegularExpression node) {
+    if (node instanceof RAlternation alternation) {
+      return alternation.getRegexList();
+    }
+    if (node instanceof RContatenation concatenation) {
+      return concatenation.getRegexList();
+    }
+    if (node instanceof ROneOrMore oneOrMore) {
+      return List.of(oneOrMore.getQuiantifiedNode());
+    }
+    if (node instanceof ROptional optional) {
+      return List.of(optional.getQuiantifiedNode());
+    }
+    if (node instanceof RZeroOrMore zeroOrMore) {
+      return List.of(zeroOrMore.getQuiantifiedNode());
+    }
+    return List.of();
+  }
+
+  /** A node whose children are being folded. */
+  private static class Frame {
+    private final RegularExpression node;
+    private final List<RegularExpression> children;
+    private int next;
+
+    public Frame(RegularExpression node) {
+      this.node = node;
+      this.children = children(node);
+    }
+  }
+
+  /**
+   * Folds the tree in post-order: the children of a node are folded from left to right, and then
+   * the node is visited with their results. A subtree whose result is given by {@link
+   * RTreeFolder#visitSubtree} is not traversed.
+   */
+  public static <Out> Out fold(RegularExpression root, RTreeFolder<Out> folder) {
+    return fold(root, folder, null);
+  }
+
+  /**
+   * Folds the tree like {@link #fold}, but a subtree that is shared by several parents, like the
+   * nodes of an {@link RTreeInterner}, is folded only once and its result is reused for the other
+   * parents. The folder must allow the same result to be used more than once.
+   */
+  public static <Out> Out foldShared(RegularExpression root, RTreeFolder<Out> folder) {
+    return fold(root, folder, new IdentityHashMap<>());
+  }
+
+  private static <Out> Out fold(
+      RegularExpression root,
+      RTreeFolder<Out> folder,
+      IdentityHashMap<RegularExpression, Out> memo) {
+    var rootResult = folder.visitSubtree(root);
+    if (rootResult.isPresent()) {
+      return rootResult.get();
+    }
+    var frames = new ArrayDeque<Frame>();
+    var results = new ArrayList<Out>();
+    frames.push(new Frame(root));
+    while (true) {
+      var frame = frames.peek();
+      if (frame.next < frame.children.size()) {
+        var child = frame.children.get(frame.next++);
+        if (memo != null && memo.containsKey(child)) {
+          results.add(memo.get(child));
+          continue;
+        }
+        var childResult = folder.visitSubtree(child);
+        if (childResult.isPresent()) {
+          results.add(childResult.get());
+        } else {
+          frames.push(new Frame(child));
+        }
+        continue;
+      }
+      frames.pop();
+      // The results of the children are on the top of the result stack.
+      var childResults = results.subList(results.size() - frame.children.size(), results.size());
+      var result = visit(frame.node, childResults, folder);
+      childResults.clear();
+      if (memo != null) {
+        memo.put(frame.node, result);
+      }
+      if (frames.isEmpty()) {
+        return result;
+      }
+      results.add(result);
+    }
+  }
+
+  private static <Out> Out visit(
+      RegularExpression node, List<Out> childResults, RTreeFolder<Out> folder) {
+    return switch (node) {
+      case RSingleCharacter ch -> folder.visit(ch);
+      case RCharRange range -> folder.visit(range);
+      case RCharRangeList list -> folder.visit(list);
+      case RCodePointClass codePoints -> folder.visit(codePoints);
+      case RAlternation alternation -> folder.visit(alternation, new ArrayList<>(childResults));
+      case RContatenation concatenation ->
+          folder.visit(concatenation, new ArrayList<>(childResults));
+      case REmpty empty -> folder.visit(empty);
+      case ROneOrMore oneOrMore -> folder.visit(oneOrMore, childResults.get(0));
+      case ROptional optional -> folder.visit(optional, childResults.get(0));
+      case RZeroOrMore zeroOrMore -> folder.visit(zeroOrMore, childResults.get(0));
+      default -> throw new IllegalArgumentException("Unknown node: " + node.getClass());
+    };
+  }
+}
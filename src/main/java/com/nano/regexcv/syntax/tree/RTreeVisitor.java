@@ -23,6 +23,8 @@ public interface RTreeVisitor<Out> {
 
   public Out visit(RCharRangeList node);
 
+  public Out visit(RCodePointClass node);
+
   public Out visit(RAlternation node);
 
   public Out visit(RContatenation node);
@@ -19,27 +19,63 @@ import com.nano.regexcv.Pass;
 import com.nano.regexcv.syntax.tree.RAlternation;
 import com.nano.regexcv.syntax.tree.RCharRange;
 import com.nano.regexcv.syntax.tree.RCharRangeList;
+import com.nano.regexcv.syntax.tree.RCodePointClass;
 import com.nano.regexcv.syntax.tree.RContatenation;
 import com.nano.regexcv.syntax.tree.REmpty;
 import com.nano.regexcv.syntax.tree.ROneOrMore;
 import com.nano.regexcv.syntax.tree.ROptional;
 import com.nano.regexcv.syntax.tree.RSingleCharacter;
-import com.nano.regexcv.syntax.tree.RTreeVisitor;
+import com.nano.regexcv.syntax.tree.RTreeFolder;
+import com.nano.regexcv.syntax.tree.RTreeTraversal;
 import com.nano.regexcv.syntax.tree.RZeroOrMore;
 import com.nano.regexcv.syntax.tree.RegularExpression;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Collects the characters of a tree into a table. Tables are looked up in a {@link
+ * CharsNumTableCache}, so trees that split their characters into the same classes share one table.
+ */
 public class CharacterSetCollector
-    implements Pass<RegularExpression, RTreeWithTable>, RTreeVisitor<Void> {
+    implements Pass<RegularExpression, RTreeWithTable>, RTreeFolder<Void> {
 
+  private final CharsNumTableCache cache;
   CharsNumTableBuilder builder;
 
+  /** Creates a collector that shares the tables of {@link CharsNumTableCache#shared()}. */
+  public CharacterSetCollector() {
+    this(CharsNumTableCache.shared());
+  }
+
+  /**
+   * @param cache The cache of the tables, or null to build a new table for every tree.
+   */
+  public CharacterSetCollector(CharsNumTableCache cache) {
+    this.cache = cache;
+  }
+
   @Override
   public RTreeWithTable accept(RegularExpression input) {
+    return acceptAll(List.of(input)).get(0);
+  }
+
+  /**
+   * Collects the characters of all trees into one table, like a set of patterns that are compiled
+   * together. Every tree is paired with the same table.
+   */
+  public List<RTreeWithTable> acceptAll(List<RegularExpression> inputs) {
     builder = new CharsNumTableBuilder();
-    input.accept(this);
-    var result = new RTreeWithTable(input, builder.build());
+    for (var input : inputs) {
+      // The characters of a shared subtree only need to be collected once.
+      RTreeTraversal.foldShared(input, this);
+    }
+    var table = cache != null ? builder.build(cache) : builder.build();
     builder = null;
-    return result;
+    var results = new ArrayList<RTreeWithTable>(inputs.size());
+    for (var input : inputs) {
+      results.add(new RTreeWithTable(input, table));
+    }
+    return results;
   }
 
   @Override
@@ -62,19 +98,19 @@ public class CharacterSetCollector
     return null;
   }
 
+  /** Collects the chars of the surrogate pairs that match the class over UTF-16. */
   @Override
-  public Void visit(RAlternation node) {
-    for (var expr : node.getRegexList()) {
-      expr.accept(this);
-    }
+  public Void visit(RCodePointClass node) {
+    return RTreeTraversal.fold(node.toUtf16(), this);
+  }
+
+  @Override
+  public Void visit(RAlternation node, List<Void> alternatives) {
     return null;
   }
 
   @Override
-  public Void visit(RContatenation node) {
-    for (var expr : node.getRegexList()) {
-      expr.accept(this);
-    }
+  public Void visit(RContatenation node, List<Void> elements) {
     return null;
   }
 
@@ -84,20 +120,17 @@ public class CharacterSetCollector
   }
 
   @Override
-  public Void visit(ROneOrMore node) {
-    node.getQuiantifiedNode().accept(this);
+  public Void visit(ROneOrMore node, Void quantified) {
     return null;
   }
 
   @Override
-  public Void visit(ROptional node) {
-    node.getQuiantifiedNode().accept(this);
+  public Void visit(ROptional node, Void quantified) {
     return null;
   }
 
   @Override
-  public Void visit(RZeroOrMore node) {
-    node.getQuiantifiedNode().accept(this);
+  public Void visit(RZeroOrMore node, Void quantified) {
     return null;
   }
 }
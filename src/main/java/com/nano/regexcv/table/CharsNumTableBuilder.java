@@ -16,20 +16,38 @@
 package com.nano.regexcv.table;
 
 import com.nano.regexcv.util.CharacterRange;
-import com.nano.regexcv.util.CharacterRangeSet;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
+/**
+ * Builds the table that partitions the collected character ranges into disjoint classes, so that
+ * every collected range is a union of consecutive classes.
+ *
+ * <p>Each range contributes a boundary where it starts and one after where it ends. The boundaries
+ * are sorted once and swept from left to right, counting the ranges that cover the current
+ * position. Every gap between two consecutive boundaries that is covered by a range becomes a
+ * class.
+ *
+ * <pre>{@code
+ * Input: a-g, d-k, e-g
+ * Output: a-c, d-d, e-g, h-k
+ * }</pre>
+ */
 public class CharsNumTableBuilder {
 
-  private CharacterRangeSet charRangesSet;
+  private int[] starts;
+
+  /** The exclusive ends of the ranges, which may be {@code Character.MAX_VALUE + 1}. */
+  private int[] ends;
+
+  private int size;
 
   public CharsNumTableBuilder() {
-    this.charRangesSet = new CharacterRangeSet();
+    this.starts = new int[16];
+    this.ends = new int[16];
   }
 
   public CharsNumTableBuilder addChar(char ch) {
-    return this.addCharRange(new CharacterRange(ch, ch));
+    return this.addCharRange(ch, ch);
   }
 
   public CharsNumTableBuilder addCharRange(CharacterRange range) {
@@ -37,109 +55,54 @@ public class CharsNumTableBuilder {
   }
 
   public CharsNumTableBuilder addCharRange(char from, char to) {
-    this.charRangesSet.addRange(from, to);
+    if (size == starts.length) {
+      starts = Arrays.copyOf(starts, size * 2);
+      ends = Arrays.copyOf(ends, size * 2);
+    }
+    starts[size] = from;
+    ends[size] = to + 1;
+    size++;
     return this;
   }
 
   public ICharsNumTable build() {
-    var result = new ArrayList<CharacterRange>();
-
-    var table = this.charRangesSet.sortedCharRanges();
-    var tableSize = table.size();
-    var i = 0;
-    while (i < tableSize) {
-      var overlappedRanges = getOverlappedRangesFrom(table, i);
-      result.addAll(splitOverlappedRanges(overlappedRanges));
-      i += overlappedRanges.size();
-    }
-
-    return new CharsNumTableImpl(result);
+    return CharsNumTableCache.newTable(buildClasses());
   }
 
-  protected static ArrayList<CharacterRange> getOverlappedRangesFrom(
-      List<CharacterRange> table, int i) {
-    var result = new ArrayList<CharacterRange>();
-    var prev = table.get(i++);
-    var right = prev.to;
-    result.add(prev);
-    while (i < table.size()) {
-      var range = table.get(i++);
-      if (range.from > right) {
-        break;
-      }
-      result.add(range);
-      right = right > range.to ? right : range.to;
-    }
-    return result;
+  /** Builds the table, or returns the cached table of the same classes. */
+  public ICharsNumTable build(CharsNumTableCache cache) {
+    return cache.get(buildClasses());
   }
 
-  protected ArrayList<CharacterRange> splitOverlappedRanges(List<CharacterRange> ranges) {
-    var result = new ArrayList<CharacterRange>();
-    var chars = CharsNumTableBuilder.getSortedCharArray(ranges);
+  /** Returns the classes in ascending order, each encoded as {@code from << 16 | to}. */
+  private int[] buildClasses() {
+    var starts = Arrays.copyOf(this.starts, size);
+    var ends = Arrays.copyOf(this.ends, size);
+    Arrays.sort(starts);
+    Arrays.sort(ends);
 
+    // There are at most two boundaries per range, so there are fewer classes than that.
+    var classes = new int[size * 2];
+    var count = 0;
     var i = 0;
-    while (true) {
-      var ch = chars.get(i);
-      var isInLeftSet = this.charRangesSet.isLeftChar(ch);
-      var isInRightSet = this.charRangesSet.isRightChar(ch);
-
-      if (isInRightSet) {
-        if (isInLeftSet) {
-          result.add(new CharacterRange(ch, ch));
-        }
-        ch++;
-      }
-      if (++i >= chars.size()) {
-        break;
+    var j = 0;
+    // The number of ranges that cover the chars from the previous boundary.
+    var depth = 0;
+    var prev = 0;
+    // Every range ends after it starts, so the sweep is over once all ranges have ended.
+    while (j < size) {
+      var boundary = i < size && starts[i] < ends[j] ? starts[i] : ends[j];
+      if (depth > 0) {
+        classes[count++] = prev << 16 | boundary - 1;
       }
-      var next = chars.get(i);
-      if (this.charRangesSet.isLeftChar(next)) {
-        next--;
+      for (; i < size && starts[i] == boundary; i++) {
+        depth++;
       }
-      if (ch <= next) {
-        result.add(new CharacterRange(ch, next));
-      }
-    }
-
-    return result;
-  }
-
-  // Merge and sort and deduplicate chatacter ranges.
-  //
-  // Input: 1-4 2-6 3-4
-  // Output: 1, 2, 3, 4, 6
-  protected static ArrayList<Character> getSortedCharArray(List<CharacterRange> ranges) {
-    var result = new ArrayList<Character>(ranges.size() * 2);
-    var rightChars = ranges.stream().map((r) -> r.to).sorted().toList();
-    int lPtr = 0, rPtr = 0, size = ranges.size();
-    var prev = ranges.get(0).from - 1;
-    while (lPtr < size) {
-      char lCh = ranges.get(lPtr).from;
-      char rCh = rightChars.get(rPtr);
-      char ch;
-      if (lCh < rCh) {
-        lPtr++;
-        ch = lCh;
-      } else if (rCh < lCh) {
-        rPtr++;
-        ch = rCh;
-      } else {
-        lPtr++;
-        rPtr++;
-        ch = lCh;
-      }
-      if (ch != prev) {
-        result.add(ch);
-        prev = ch;
-      }
-    }
-    while (rPtr < size) {
-      char ch = rightChars.get(rPtr++);
-      if (ch != prev) {
-        result.add(ch);
-        prev = ch;
+      for (; j < size && ends[j] == boundary; j++) {
+        depth--;
       }
+      prev = boundary;
     }
-    return result;
+    return Arrays.copyOf(classes, count);
   }
 }
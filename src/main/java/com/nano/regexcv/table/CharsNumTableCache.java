@@ -0,0 +1,150 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.table;
+
+import com.nano.regexcv.util.CharacterRange;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe cache of tables, so that compilations whose characters are split into the same
+ * classes share one table.
+ *
+ * <p>A table is keyed by its classes, which are fully determined by the set of collected ranges. A
+ * table is never modified once it is built, so it can be used by any number of DFAs at the same
+ * time. The least recently used tables are evicted when the cache holds more than its maximum size.
+ */
+public class CharsNumTableCache {
+
+  public static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+  private static final CharsNumTableCache SHARED = new CharsNumTableCache(DEFAULT_MAXIMUM_SIZE);
+
+  /** Returns the cache used by {@link CharacterSetCollector} by default. */
+  public static CharsNumTableCache shared() {
+    return SHARED;
+  }
+
+  /** The classes of a table, encoded as {@code from << 16 | to}. */
+  private static class Classes {
+    private final int[] codes;
+    private final int hash;
+
+    public Classes(int[] codes) {
+      this.codes = codes;
+      this.hash = Arrays.hashCode(codes);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof Classes classes && Arrays.equals(codes, classes.codes);
+    }
+  }
+
+  private final int maximumSize;
+
+  /** Guarded by itself. It is in access order, so the eldest entry is the least recently used. */
+  private final LinkedHashMap<Classes, ICharsNumTable> tables;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+
+  public CharsNumTableCache(int maximumSize) {
+    if (maximumSize < 0) {
+      throw new IllegalArgumentException("Illegal maximum size: " + maximumSize);
+    }
+    this.maximumSize = maximumSize;
+    this.tables =
+        new LinkedHashMap<>(16, .75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Classes, ICharsNumTable> eldest) {
+            return size() > CharsNumTableCache.this.maximumSize;
+          }
+        };
+  }
+
+  /**
+   * Returns the table of the given classes, building it if it is not cached.
+   *
+   * @param codes The disjoint classes in ascending order, each encoded as {@code from << 16 | to}.
+   *     The array must not be modified after the call.
+   */
+  public ICharsNumTable get(int[] codes) {
+    var key = new Classes(codes);
+    synchronized (tables) {
+      var table = tables.get(key);
+      if (table != null) {
+        hitCount.incrementAndGet();
+        return table;
+      }
+    }
+    missCount.incrementAndGet();
+    var table = newTable(codes);
+    synchronized (tables) {
+      // Another thread may have built the same table in the meantime, keep only one of them.
+      var cached = tables.putIfAbsent(key, table);
+      return cached != null ? cached : table;
+    }
+  }
+
+  static ICharsNumTable newTable(int[] codes) {
+    var ranges = new ArrayList<CharacterRange>(codes.length);
+    for (var code : codes) {
+      ranges.add(new CharacterRange((char) (code >>> 16), (char) code));
+    }
+    return new CharsNumTableImpl(ranges);
+  }
+
+  public void invalidateAll() {
+    synchronized (tables) {
+      tables.clear();
+    }
+  }
+
+  public int size() {
+    synchronized (tables) {
+      return tables.size();
+    }
+  }
+
+  public int getMaximumSize() {
+    return maximumSize;
+  }
+
+  /** Returns the number of lookups that found a cached table. */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /** Returns the number of lookups that built a new table. */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "CharsNumTableCache{size=%d, hits=%d, misses=%d}", size(), getHitCount(), getMissCount());
+  }
+}
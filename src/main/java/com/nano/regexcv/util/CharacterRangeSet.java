@@ -16,72 +16,50 @@
 package com.nano.regexcv.util;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
+import java.util.NoSuchElementException;
 import java.util.Spliterator;
+import java.util.Spliterators;
 
+/**
+ * A set of character ranges.
+ *
+ * <p>A range is encoded into a single int as {@code from << 16 | to} and stored in an
+ * open-addressed table with linear probing. {@code 0} marks an empty slot, so the range {@code
+ * \u0000-\u0000}, whose code is {@code 0} too, is kept by a flag. The left and the right chars of
+ * the ranges are kept in bit sets, so checking one of them is a single bit test.
+ */
 public class CharacterRangeSet implements Iterable<CharacterRange> {
 
-  private static final float LOAD_FACTOR = .75f;
   private static final int MAX_INITAL_CAPACITY = 1 << 30;
 
-  private static class Node {
-    private CharacterRange range;
-    private Node next;
-
-    protected Node(char from, char to, Node next) {
-      this.range = new CharacterRange(from, to);
-      this.next = next;
-    }
-
-    protected Node findNode(char from, char to) {
-      Node n = this;
-      while (n != null) {
-        if (n.range.equals(from, to)) {
-          return n;
-        }
-        n = n.next;
-      }
-      return null;
-    }
-  }
-
-  private static char[] toCharArray(Set<Character> charSet) {
-    char[] arr = new char[charSet.size()];
-    Iterator<Character> charIterator = charSet.iterator();
-    for (int i = 0; i < arr.length; i++) {
-      arr[i] = charIterator.next();
-    }
-    return arr;
-  }
-
   private static int tableSizeFor(int capacity) {
-    int n = 1;
-    while (n < capacity) {
+    int n = 2;
+    while (n < capacity * 2L && n < MAX_INITAL_CAPACITY) {
       n <<= 1;
     }
     return n;
   }
 
-  private static int hashCode(char from, char to) {
-    int hash = CharacterRange.hashCode(from, to);
-    return (hash >> 16) ^ hash;
+  private static int encode(char from, char to) {
+    return from << 16 | to;
   }
 
-  private static int hashCode(Object obj) {
-    int hash = obj.hashCode();
-    return (hash >> 16) ^ hash;
+  private static CharacterRange decode(int code) {
+    return new CharacterRange((char) (code >>> 16), (char) code);
   }
 
-  private HashSet<Character> leftChars;
-  private HashSet<Character> rightChars;
+  private final BitSet leftChars;
+  private final BitSet rightChars;
 
-  private Node[] table;
+  /** The codes of the ranges. The table is at most half full, so a probe always ends. */
+  private int[] table;
+
+  private boolean containsZero;
   private int size;
-  private int threadshould;
 
   public CharacterRangeSet() {
     this(16);
@@ -91,41 +69,42 @@ public class CharacterRangeSet implements Iterable<CharacterRange> {
     if (initalCapacity <= 0 || initalCapacity > MAX_INITAL_CAPACITY) {
       throw new IllegalArgumentException("Illegal inital capacity: " + initalCapacity);
     }
+    this.table = new int[tableSizeFor(initalCapacity)];
+    this.leftChars = new BitSet();
+    this.rightChars = new BitSet();
+  }
 
-    this.table = new Node[tableSizeFor(initalCapacity)];
-    this.threadshould = (int) (this.table.length * LOAD_FACTOR);
+  private static int indexOf(int code, int[] table) {
+    var hash = code * 0x9E3779B9;
+    return (hash ^ hash >>> 16) & table.length - 1;
+  }
 
-    this.leftChars = new HashSet<>();
-    this.rightChars = new HashSet<>();
+  /** Adds the code to the table if it is absent and returns true if it has been added. */
+  private static boolean insert(int code, int[] table, int index) {
+    var mask = table.length - 1;
+    for (var i = index; ; i = i + 1 & mask) {
+      if (table[i] == code) {
+        return false;
+      }
+      if (table[i] == 0) {
+        table[i] = code;
+        return true;
+      }
+    }
   }
 
   private void ensureCapacity() {
-    if (size < threadshould) {
+    if ((size + 1) * 2 <= table.length) {
       return;
     }
-    Node[] oldTable = this.table;
-    this.table = new Node[oldTable.length * 2];
-    this.threadshould = (int) (this.table.length * LOAD_FACTOR);
-    for (Node n : oldTable) {
-      addNode(n);
-    }
-  }
-
-  private void addNode(Node n) {
-    while (n != null) {
-      Node next = n.next;
-      int index = this.table.length - 1 & hashCode(n.range);
-      n.next = this.table[index];
-      this.table[index] = n;
-      n = next;
+    var oldTable = this.table;
+    var newTable = new int[oldTable.length * 2];
+    for (var code : oldTable) {
+      if (code != 0) {
+        insert(code, newTable, indexOf(code, newTable));
+      }
     }
-  }
-
-  private void addNewNode(char from, char to, int tableIndex) {
-    leftChars.add(from);
-    rightChars.add(to);
-    table[tableIndex] = new Node(from, to, table[tableIndex]);
-    size++;
+    this.table = newTable;
   }
 
   public void addChar(char ch) {
@@ -133,36 +112,68 @@ public class CharacterRangeSet implements Iterable<CharacterRange> {
   }
 
   public void addRange(char from, char to) {
-    ensureCapacity();
-    int hash = hashCode(from, to);
-    int index = hash & table.length - 1;
-    Node n = table[index];
-    if (n == null || (n = n.findNode(from, to)) == null) {
-      addNewNode(from, to, index);
+    var code = encode(from, to);
+    boolean added;
+    if (code == 0) {
+      added = !containsZero;
+      containsZero = true;
+    } else {
+      ensureCapacity();
+      added = insert(code, table, indexOf(code, table));
+    }
+    if (added) {
+      leftChars.set(from);
+      rightChars.set(to);
+      size++;
     }
   }
 
+  public boolean contains(char from, char to) {
+    var code = encode(from, to);
+    if (code == 0) {
+      return containsZero;
+    }
+    var mask = table.length - 1;
+    for (var i = indexOf(code, table); table[i] != 0; i = i + 1 & mask) {
+      if (table[i] == code) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns the distinct left chars in ascending order. */
   public char[] leftChars() {
     return toCharArray(leftChars);
   }
 
+  /** Returns the distinct right chars in ascending order. */
   public char[] rightChars() {
     return toCharArray(rightChars);
   }
 
+  private static char[] toCharArray(BitSet chars) {
+    var arr = new char[chars.cardinality()];
+    for (int i = 0, ch = chars.nextSetBit(0); ch >= 0; ch = chars.nextSetBit(ch + 1)) {
+      arr[i++] = (char) ch;
+    }
+    return arr;
+  }
+
+  /** Returns the distinct left chars followed by the distinct right chars. */
   public List<Character> getChars() {
-    List<Character> chars = new ArrayList<>();
-    chars.addAll(leftChars);
-    chars.addAll(rightChars);
+    var chars = new ArrayList<Character>(leftChars.cardinality() + rightChars.cardinality());
+    leftChars.stream().forEach(ch -> chars.add((char) ch));
+    rightChars.stream().forEach(ch -> chars.add((char) ch));
     return chars;
   }
 
   public boolean isLeftChar(char ch) {
-    return leftChars.contains(ch);
+    return leftChars.get(ch);
   }
 
   public boolean isRightChar(char ch) {
-    return rightChars.contains(ch);
+    return rightChars.get(ch);
   }
 
   public int size() {
@@ -180,48 +191,44 @@ public class CharacterRangeSet implements Iterable<CharacterRange> {
 
   @Override
   public Iterator<CharacterRange> iterator() {
-    return new CharRangeIterator(this.table);
+    return new CharRangeIterator();
   }
 
   @Override
   public Spliterator<CharacterRange> spliterator() {
-    throw new UnsupportedOperationException();
+    return Spliterators.spliterator(
+        iterator(), size, Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.SIZED);
   }
 
-  private static class CharRangeIterator implements Iterator<CharacterRange> {
+  private class CharRangeIterator implements Iterator<CharacterRange> {
 
-    private Node[] table;
-    private int p;
-    private Node cursor;
+    private final int[] table = CharacterRangeSet.this.table;
+    private boolean zeroReturned = !containsZero;
+    private int p = -1;
 
-    public CharRangeIterator(Node[] table) {
-      this.table = table;
+    public CharRangeIterator() {
       moveToNext();
     }
 
     private void moveToNext() {
-      if (cursor != null) {
-        cursor = cursor.next;
-        if (cursor != null) {
-          return;
-        }
-      }
-      while (p < table.length) {
-        cursor = table[p++];
-        if (cursor != null) {
-          return;
-        }
-      }
+      for (p++; p < table.length && table[p] == 0; p++) {}
     }
 
     @Override
     public boolean hasNext() {
-      return cursor != null;
+      return !zeroReturned || p < table.length;
     }
 
     @Override
     public CharacterRange next() {
-      CharacterRange range = cursor.range;
+      if (!zeroReturned) {
+        zeroReturned = true;
+        return decode(0);
+      }
+      if (p >= table.length) {
+        throw new NoSuchElementException();
+      }
+      var range = decode(table[p]);
       moveToNext();
       return range;
     }
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.util;
+
+import java.util.Arrays;
+
+/**
+ * A growable set of code point ranges in {@code [0, 0x10FFFF]}.
+ *
+ * <p>{@link CharacterRange} can only hold chars, so the classes of a regex are collected here
+ * before their supplementary code points are split into surrogate pairs. Ranges are stored as
+ * {@code from, to} pairs of a flat int array:
+ *
+ * <pre>{@code
+ * new CodePointRanges().add('a', 'z').add(0x1F600, 0x1F64F).add('b', 'c').toArray()
+ * Output: [0x61, 0x7A, 0x1F600, 0x1F64F]
+ * }</pre>
+ */
+public class CodePointRanges {
+
+  private int[] pairs = new int[16];
+  private int size;
+
+  public CodePointRanges add(int codePoint) {
+    return add(codePoint, codePoint);
+  }
+
+  public CodePointRanges add(int from, int to) {
+    if (from < 0 || to > Character.MAX_CODE_POINT || from > to) {
+      throw new IllegalArgumentException(String.format("Illegal range: %X-%X", from, to));
+    }
+    if (size == pairs.length) {
+      pairs = Arrays.copyOf(pairs, size * 2);
+    }
+    pairs[size++] = from;
+    pairs[size++] = to;
+    return this;
+  }
+
+  public CodePointRanges addAll(CharacterRange[] ranges) {
+    for (var range : ranges) {
+      add(range.from, range.to);
+    }
+    return this;
+  }
+
+  /** Adds the ranges of an array of {@code from, to} pairs. */
+  public CodePointRanges addAll(int[] ranges) {
+    for (int i = 0; i < ranges.length; i += 2) {
+      add(ranges[i], ranges[i + 1]);
+    }
+    return this;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Returns the sorted {@code from, to} pairs, where overlapping and adjacent ranges are merged.
+   */
+  public int[] toArray() {
+    // The ranges are sorted by their starts, which are the high 32 bits of the keys.
+    var keys = new long[size / 2];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = (long) pairs[2 * i] << 32 | pairs[2 * i + 1];
+    }
+    Arrays.sort(keys);
+    var result = new int[size];
+    var n = 0;
+    for (var key : keys) {
+      var from = (int) (key >>> 32);
+      var to = (int) key;
+      if (n > 0 && from <= result[n - 1] + 1) {
+        result[n - 1] = Math.max(result[n - 1], to);
+      } else {
+        result[n++] = from;
+        result[n++] = to;
+      }
+    }
+    return Arrays.copyOf(result, n);
+  }
+
+  /**
+   * Returns the code points that are not in the sorted and merged pairs. Surrogates are not code
+   * points of their own, so they are never in the result.
+   */
+  public static int[] complement(int[] ranges) {
+    var result = new CodePointRanges();
+    var next = 0;
+    for (int i = 0; i < ranges.length; i += 2) {
+      if (next < ranges[i]) {
+        result.add(next, ranges[i] - 1);
+      }
+      next = ranges[i + 1] + 1;
+    }
+    if (next <= Character.MAX_CODE_POINT) {
+      result.add(next, Character.MAX_CODE_POINT);
+    }
+    return result.withoutSurrogates();
+  }
+
+  private int[] withoutSurrogates() {
+    var result = new CodePointRanges();
+    for (int i = 0; i < size; i += 2) {
+      var from = pairs[i];
+      var to = pairs[i + 1];
+      if (from < Character.MIN_SURROGATE) {
+        result.add(from, Math.min(to, Character.MIN_SURROGATE - 1));
+      }
+      if (to > Character.MAX_SURROGATE) {
+        result.add(Math.max(from, Character.MAX_SURROGATE + 1), to);
+      }
+    }
+    return Arrays.copyOf(result.pairs, result.size);
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.util;
+
+import java.util.LinkedHashMap;
+
+/** Minimal JSON support for the flat objects that regexcv reads and writes. */
+public class Json {
+
+  /** Returns the JSON string literal of the given string. */
+  public static String quote(String str) {
+    var buf = new StringBuilder(str.length() + 2).append('"');
+    for (int i = 0; i < str.length(); i++) {
+      var ch = str.charAt(i);
+      switch (ch) {
+        case '"' -> buf.append("\\\"");
+        case '\\' -> buf.append("\\\\");
+        case '\n' -> buf.append("\\n");
+        case '\r' -> buf.append("\\r");
+        case '\t' -> buf.append("\\t");
+        default -> {
+          if (ch < 0x20) {
+            buf.append(String.format("\\u%04x", (int) ch));
+          } else {
+            buf.append(ch);
+          }
+        }
+      }
+    }
+    return buf.append('"').toString();
+  }
+
+  /**
+   * Parses a JSON object whose values are strings, booleans, numbers or null. Numbers are returned
+   * as {@link Double}s and nested objects or arrays are not supported.
+   *
+   * @throws IllegalArgumentException if the input is not such an object.
+   */
+  public static LinkedHashMap<String, Object> parseFlatObject(String json) {
+    var parser = new Json(json);
+    var object = parser.parseObject();
+    parser.skipWhitespace();
+    if (parser.position != json.length()) {
+      throw parser.error("end of input");
+    }
+    return object;
+  }
+
+  private final String json;
+  private int position;
+
+  private Json(String json) {
+    this.json = json;
+  }
+
+  private LinkedHashMap<String, Object> parseObject() {
+    var object = new LinkedHashMap<String, Object>();
+    expect('{');
+    skipWhitespace();
+    if (peek() == '}') {
+      position++;
+      return object;
+    }
+    do {
+      skipWhitespace();
+      var key = parseString();
+      skipWhitespace();
+      expect(':');
+      skipWhitespace();
+      object.put(key, parseValue());
+      skipWhitespace();
+    } while (accept(','));
+    expect('}');
+    return object;
+  }
+
+  private Object parseValue() {
+    var ch = peek();
+    if (ch == '"') {
+      return parseString();
+    }
+    if (json.startsWith("true", position)) {
+      position += 4;
+      return true;
+    }
+    if (json.startsWith("false", position)) {
+      position += 5;
+      return false;
+    }
+    if (json.startsWith("null", position)) {
+      position += 4;
+      return null;
+    }
+    if (ch == '-' || (ch >= '0' && ch <= '9')) {
+      var start = position;
+      while (position < json.length() && "+-.eE0123456789".indexOf(json.charAt(position)) >= 0) {
+        position++;
+      }
+      try {
+        return Double.parseDouble(json.substring(start, position));
+      } catch (NumberFormatException e) {
+        position = start;
+        throw error("a number");
+      }
+    }
+    throw error("a string, boolean, number or null");
+  }
+
+  private String parseString() {
+    expect('"');
+    var buf = new StringBuilder();
+    while (true) {
+      if (position >= json.length()) {
+        throw error("'\"'");
+      }
+      var ch = json.charAt(position++);
+      if (ch == '"') {
+        return buf.toString();
+      }
+      if (ch != '\\') {
+        buf.append(ch);
+        continue;
+      }
+      if (position >= json.length()) {
+        throw error("an escape sequence");
+      }
+      switch (json.charAt(position++)) {
+        case '"' -> buf.append('"');
+        case '\\' -> buf.append('\\');
+        case '/' -> buf.append('/');
+        case 'b' -> buf.append('\b');
+        case 'f' -> buf.append('\f');
+        case 'n' -> buf.append('\n');
+        case 'r' -> buf.append('\r');
+        case 't' -> buf.append('\t');
+        case 'u' -> {
+          if (position + 4 > json.length()) {
+            throw error("4 hex digits");
+          }
+          try {
+            buf.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+          } catch (NumberFormatException e) {
+            throw error("4 hex digits");
+          }
+          position += 4;
+        }
+        default -> {
+          position--;
+          throw error("an escape sequence");
+        }
+      }
+    }
+  }
+
+  private void skipWhitespace() {
+    while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+      position++;
+    }
+  }
+
+  private char peek() {
+    return position < json.length() ? json.charAt(position) : '\0';
+  }
+
+  private boolean accept(char ch) {
+    if (peek() == ch && position < json.length()) {
+      position++;
+      return true;
+    }
+    return false;
+  }
+
+  private void expect(char ch) {
+    if (!accept(ch)) {
+      throw error("'" + ch + "'");
+    }
+  }
+
+  private IllegalArgumentException error(String expected) {
+    return new IllegalArgumentException(
+        String.format("Invalid JSON at %d: expected %s", position, expected));
+  }
+}
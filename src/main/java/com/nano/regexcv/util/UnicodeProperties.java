@@ -0,0 +1,186 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+
+/**
+ * The code point ranges of Unicode properties, such as the general category {@code Lu} or the
+ * script {@code Greek}.
+ *
+ * <p>The ranges of a property are computed from {@link Character#getType} or {@link
+ * Character.UnicodeScript} the first time it is used, so they match the Unicode version of the
+ * running JVM. They are sorted and merged once, and the same array is returned to every caller
+ * afterwards, so it must not be modified. The ranges are {@code from, to} pairs of code points like
+ * the ones of {@link CodePointRanges}, so they include the supplementary code points.
+ *
+ * <p>A property is named like in {@link java.util.regex.Pattern}:
+ *
+ * <ul>
+ *   <li>A general category or a category group: {@code Lu}, {@code L}, {@code IsLu}, {@code gc=Lu}
+ *       or {@code general_category=Lu}.
+ *   <li>A script: {@code IsGreek}, {@code sc=Greek} or {@code script=Greek}. Script names are case
+ *       insensitive and may be aliases such as {@code Grek}.
+ * </ul>
+ */
+public class UnicodeProperties {
+
+  /** The types of {@link Character#getType} of each general category. */
+  private static final Map<String, Integer> CATEGORIES = new HashMap<>();
+
+  private static void addCategory(String name, int type) {
+    CATEGORIES.put(name, 1 << type);
+    // A category group like 'L' is the union of the categories whose names start with it.
+    CATEGORIES.merge(name.substring(0, 1), 1 << type, (a, b) -> a | b);
+  }
+
+  static {
+    addCategory("Lu", Character.UPPERCASE_LETTER);
+    addCategory("Ll", Character.LOWERCASE_LETTER);
+    addCategory("Lt", Character.TITLECASE_LETTER);
+    addCategory("Lm", Character.MODIFIER_LETTER);
+    addCategory("Lo", Character.OTHER_LETTER);
+    addCategory("Mn", Character.NON_SPACING_MARK);
+    addCategory("Me", Character.ENCLOSING_MARK);
+    addCategory("Mc", Character.COMBINING_SPACING_MARK);
+    addCategory("Nd", Character.DECIMAL_DIGIT_NUMBER);
+    addCategory("Nl", Character.LETTER_NUMBER);
+    addCategory("No", Character.OTHER_NUMBER);
+    addCategory("Zs", Character.SPACE_SEPARATOR);
+    addCategory("Zl", Character.LINE_SEPARATOR);
+    addCategory("Zp", Character.PARAGRAPH_SEPARATOR);
+    addCategory("Cc", Character.CONTROL);
+    addCategory("Cf", Character.FORMAT);
+    addCategory("Co", Character.PRIVATE_USE);
+    addCategory("Cs", Character.SURROGATE);
+    addCategory("Cn", Character.UNASSIGNED);
+    addCategory("Pd", Character.DASH_PUNCTUATION);
+    addCategory("Ps", Character.START_PUNCTUATION);
+    addCategory("Pe", Character.END_PUNCTUATION);
+    addCategory("Pc", Character.CONNECTOR_PUNCTUATION);
+    addCategory("Po", Character.OTHER_PUNCTUATION);
+    addCategory("Pi", Character.INITIAL_QUOTE_PUNCTUATION);
+    addCategory("Pf", Character.FINAL_QUOTE_PUNCTUATION);
+    addCategory("Sm", Character.MATH_SYMBOL);
+    addCategory("Sc", Character.CURRENCY_SYMBOL);
+    addCategory("Sk", Character.MODIFIER_SYMBOL);
+    addCategory("So", Character.OTHER_SYMBOL);
+    CATEGORIES.put(
+        "LC",
+        1 << Character.UPPERCASE_LETTER
+            | 1 << Character.LOWERCASE_LETTER
+            | 1 << Character.TITLECASE_LETTER);
+  }
+
+  /**
+   * A property resolved from its name. All names of a property resolve to equal properties, for
+   * example {@code Lu}, {@code IsLu} and {@code gc=Lu}, or {@code IsHan} and {@code sc=Hani}.
+   */
+  public sealed interface Property {}
+
+  /**
+   * @param types The bitmask of the types of {@link Character#getType} in the category.
+   */
+  public record Category(int types) implements Property {}
+
+  public record Script(Character.UnicodeScript script) implements Property {}
+
+  /** Keyed by the resolved property, so it holds at most one entry per category and script. */
+  private static final ConcurrentHashMap<Property, int[]> RANGES = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the sorted and merged {@code from, to} pairs of the property, or null if there is no
+   * property of the name. The returned array is shared and must not be modified.
+   */
+  public static int[] rangesOf(String name) {
+    var property = forName(name);
+    return property != null ? rangesOf(property) : null;
+  }
+
+  /**
+   * Returns the sorted and merged {@code from, to} pairs of the property. The returned array is
+   * shared and must not be modified.
+   */
+  public static int[] rangesOf(Property property) {
+    var ranges = RANGES.get(property);
+    if (ranges == null) {
+      ranges =
+          switch (property) {
+            case Category category ->
+                collect(cp -> (category.types() >>> Character.getType(cp) & 1) != 0);
+            case Script script -> collect(cp -> Character.UnicodeScript.of(cp) == script.script());
+          };
+      var previous = RANGES.putIfAbsent(property, ranges);
+      ranges = previous != null ? previous : ranges;
+    }
+    return ranges;
+  }
+
+  /** Returns the property of the name, or null if there is no property of the name. */
+  public static Property forName(String name) {
+    var eq = name.indexOf('=');
+    if (eq >= 0) {
+      var key = name.substring(0, eq);
+      var value = name.substring(eq + 1);
+      return switch (key) {
+        case "gc", "general_category" -> category(value);
+        case "sc", "script" -> script(value);
+        default -> null;
+      };
+    }
+    if (name.startsWith("Is")) {
+      var value = name.substring(2);
+      var category = category(value);
+      return category != null ? category : script(value);
+    }
+    return category(name);
+  }
+
+  private static Property category(String name) {
+    var types = CATEGORIES.get(name);
+    return types != null ? new Category(types) : null;
+  }
+
+  private static Property script(String name) {
+    try {
+      return new Script(Character.UnicodeScript.forName(name));
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /** Returns the maximal ranges of consecutive code points that match the predicate. */
+  private static int[] collect(IntPredicate predicate) {
+    var ranges = new CodePointRanges();
+    var from = -1;
+    for (int cp = 0; cp <= Character.MAX_CODE_POINT; cp++) {
+      var matched = predicate.test(cp);
+      if (matched && from < 0) {
+        from = cp;
+      } else if (!matched && from >= 0) {
+        ranges.add(from, cp - 1);
+        from = -1;
+      }
+    }
+    if (from >= 0) {
+      ranges.add(from, Character.MAX_CODE_POINT);
+    }
+    return ranges.toArray();
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.util;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Splits code point ranges into sequences of byte ranges of UTF-8.
+ *
+ * <p>Each sequence matches the encodings of a contiguous part of the code point range, for example:
+ *
+ * <pre>{@code
+ * Input: U+0000-U+FFFF
+ * Output:
+ *   [00-7F]
+ *   [C2-DF][80-BF]
+ *   [E0][A0-BF][80-BF]
+ *   [E1-EC][80-BF][80-BF]
+ *   [ED][80-9F][80-BF]
+ *   [EE-EF][80-BF][80-BF]
+ * }</pre>
+ *
+ * The bytes are represented as characters in {@code [0, 255]}. Surrogates can not be encoded and
+ * are excluded.
+ */
+public class Utf8Sequences {
+
+  private static final int[] MAX_CODE_POINTS = {0x7F, 0x7FF, 0xFFFF};
+
+  /** Returns the byte range sequences of the code points {@code from-to} in ascending order. */
+  public static List<CharacterRange[]> of(int from, int to) {
+    var result = new ArrayList<CharacterRange[]>();
+    var stack = new LinkedList<int[]>();
+    stack.push(new int[] {from, to});
+    loop:
+    while (!stack.isEmpty()) {
+      var range = stack.pop();
+      var l = range[0];
+      var r = range[1];
+      if (l > r) {
+        continue;
+      }
+      if (l <= Character.MAX_SURROGATE && r >= Character.MIN_SURROGATE) {
+        stack.push(new int[] {Character.MAX_SURROGATE + 1, r});
+        stack.push(new int[] {l, Character.MIN_SURROGATE - 1});
+        continue;
+      }
+      // All code points of a sequence must have the same encoded length.
+      for (var max : MAX_CODE_POINTS) {
+        if (l <= max && max < r) {
+          stack.push(new int[] {max + 1, r});
+          stack.push(new int[] {l, max});
+          continue loop;
+        }
+      }
+      if (r <= 0x7F) {
+        result.add(new CharacterRange[] {CharacterRange.of((char) l, (char) r)});
+        continue;
+      }
+      // The continuation bytes of a sequence must range over all bytes below the first
+      // different byte, otherwise the sequence would match code points out of the range.
+      for (int i = 1; i < 4; i++) {
+        var mask = (1 << (6 * i)) - 1;
+        if ((l & ~mask) != (r & ~mask)) {
+          if ((l & mask) != 0) {
+            stack.push(new int[] {(l | mask) + 1, r});
+            stack.push(new int[] {l, l | mask});
+            continue loop;
+          }
+          if ((r & mask) != mask) {
+            stack.push(new int[] {r & ~mask, r});
+            stack.push(new int[] {l, (r & ~mask) - 1});
+            continue loop;
+          }
+        }
+      }
+      var lBytes = encode(l);
+      var rBytes = encode(r);
+      var sequence = new CharacterRange[lBytes.length];
+      for (int i = 0; i < sequence.length; i++) {
+        sequence[i] = CharacterRange.of(lBytes[i], rBytes[i]);
+      }
+      result.add(sequence);
+    }
+    return result;
+  }
+
+  /** Encodes the code point into UTF-8 bytes that are represented as characters. */
+  public static char[] encode(int cp) {
+    if (cp <= 0x7F) {
+      return new char[] {(char) cp};
+    }
+    if (cp <= 0x7FF) {
+      return new char[] {(char) (0xC0 | cp >> 6), continuation(cp)};
+    }
+    if (cp <= 0xFFFF) {
+      return new char[] {(char) (0xE0 | cp >> 12), continuation(cp >> 6), continuation(cp)};
+    }
+    return new char[] {
+      (char) (0xF0 | cp >> 18), continuation(cp >> 12), continuation(cp >> 6), continuation(cp)
+    };
+  }
+
+  private static char continuation(int bits) {
+    return (char) (0x80 | bits & 0x3F);
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv;
+
+import static org.junit.Assert.*;
+
+import com.nano.regexcv.dfa.DfaMinimizer;
+import com.nano.regexcv.dfa.SubsetConstructionPass;
+import com.nano.regexcv.nfa.RExpTree2NfaPass;
+import com.nano.regexcv.syntax.RegexParser;
+import com.nano.regexcv.table.CharacterSetCollector;
+import java.util.List;
+import org.junit.Test;
+
+public class PassStatisticsTest {
+
+  @Test
+  public void recordsEveryInstrumentedPass() {
+    var stats = new PassStatistics();
+    var dfa =
+        stats
+            .instrument("parse", new RegexParser())
+            .next(stats.instrument("collect", new CharacterSetCollector()))
+            .next(stats.instrument("nfa", new RExpTree2NfaPass()))
+            .next(stats.instrument("dfa", new SubsetConstructionPass()))
+            .next(stats.instrument("min", new DfaMinimizer()))
+            .accept("(a|b)*abb*");
+
+    var records = stats.getRecords();
+    assertEquals(
+        List.of("parse", "collect", "nfa", "dfa", "min"),
+        records.stream().map(PassStatistics.Record::getName).toList());
+    for (var record : records) {
+      assertTrue(record.getWallTimeNanos() >= 0);
+    }
+    // a, b, (a|b), (a|b)*, a, b, b, b*, concatenation
+    assertEquals(Long.valueOf(9), records.get(0).getSizes().get("astNodes"));
+    assertEquals(Long.valueOf(2), records.get(1).getSizes().get("tableClasses"));
+    assertTrue(records.get(2).getSizes().get("nfaEdges") > 0);
+    assertEquals(
+        Long.valueOf(dfa.getAllStates().length), records.get(4).getSizes().get("dfaStates"));
+    assertTrue(records.get(3).getSizes().get("dfaStates") >= dfa.getAllStates().length);
+  }
+
+  @Test
+  public void toJson() {
+    var stats = new PassStatistics();
+    assertEquals("{\"totalWallTimeNanos\": 0, \"passes\": []}", stats.toJson());
+
+    stats.instrument("say \"hi\"", (String str) -> str + "!").accept("hi");
+    var json = stats.toJson();
+    assertTrue(json, json.contains("{\"name\": \"say \\\"hi\\\"\", \"wallTimeNanos\": "));
+    assertTrue(json, json.contains("\"chars\": 3}"));
+  }
+}
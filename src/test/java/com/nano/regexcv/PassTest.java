@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class PassTest {
+
+  @Test
+  public void cachedPassShouldRunOncePerInput() {
+    var count = new AtomicInteger();
+    Pass<String, Integer> length =
+        (str) -> {
+          count.incrementAndGet();
+          return str.length();
+        };
+    var cached = length.cached();
+    var doubled = cached.next(n -> n * 2);
+    var squared = cached.next(n -> n * n);
+
+    assertEquals(Integer.valueOf(6), doubled.accept("abc"));
+    assertEquals(Integer.valueOf(9), squared.accept("abc"));
+    assertEquals(1, count.get());
+
+    assertEquals(Integer.valueOf(4), doubled.accept("ab"));
+    assertEquals(2, count.get());
+    assertSame(cached, cached.cached());
+  }
+
+  @Test
+  public void teeShouldFeedEveryBranchInOrder() {
+    var count = new AtomicInteger();
+    Pass<String, String> front =
+        (str) -> {
+          count.incrementAndGet();
+          return str.trim();
+        };
+    Pass<String, List<Object>> pass =
+        front.next(Pass.tee(String::length, String::toUpperCase, str -> str.charAt(0)));
+
+    assertEquals(List.of(3, "ABC", 'a'), pass.accept("  abc "));
+    assertEquals(1, count.get());
+  }
+}
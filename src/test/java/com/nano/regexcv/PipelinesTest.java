@@ -0,0 +1,47 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import org.junit.Test;
+
+public class PipelinesTest {
+
+  @Test
+  public void dfaShouldRunEveryStageInOrder() {
+    var stats = new PassStatistics();
+    var dfa = Pipelines.dfa(Pipelines.recorded("(a|b)*abb", stats)).accept("(a|b)*abb");
+
+    assertEquals(
+        List.of(
+            "parse",
+            "simplification",
+            "character-set-collection",
+            "nfa-construction",
+            "subset-construction",
+            "minimization"),
+        stats.getRecords().stream().map(PassStatistics.Record::getName).toList());
+    assertEquals(4, dfa.getAllStates().length);
+  }
+
+  @Test
+  public void noneShouldNotWrapPasses() {
+    Pass<String, String> pass = String::trim;
+    assertSame(pass, Pipelines.NONE.wrap("trim", pass));
+  }
+}
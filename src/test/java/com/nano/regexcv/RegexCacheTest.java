@@ -0,0 +1,115 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv;
+
+import static org.junit.Assert.*;
+
+import com.nano.regexcv.syntax.RegexSyntaxErrorException;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class RegexCacheTest {
+
+  @Test
+  public void hitsAndMisses() {
+    var cache = new RegexCache(1 << 20);
+    var table = cache.get("(abc)*");
+    assertTrue(table.matches("abcabc"));
+    assertSame(table, cache.get("(abc)*"));
+    cache.get("a+");
+
+    assertEquals(1, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+    assertEquals(2, cache.getLoadCount());
+    assertEquals(2, cache.size());
+    assertEquals(
+        cache.getIfPresent("(abc)*").sizeInBytes() + cache.getIfPresent("a+").sizeInBytes(),
+        cache.getWeight());
+  }
+
+  @Test
+  public void leastRecentlyUsedShouldBeEvicted() {
+    var weight = RegexCache.compile("a").sizeInBytes();
+    var cache = new RegexCache(weight * 2);
+    cache.get("a");
+    cache.get("b");
+    cache.get("a");
+    cache.get("c");
+
+    assertEquals(1, cache.getEvictionCount());
+    assertNotNull(cache.getIfPresent("a"));
+    assertNull(cache.getIfPresent("b"));
+    assertNotNull(cache.getIfPresent("c"));
+    assertTrue(cache.getWeight() <= cache.getMaximumWeight());
+  }
+
+  @Test
+  public void tooHeavyTableShouldNotBeCached() {
+    var cache = new RegexCache(16);
+    assertTrue(cache.get("abc").matches("abc"));
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getWeight());
+  }
+
+  @Test
+  public void syntaxErrorShouldNotBeCached() {
+    var cache = new RegexCache(1 << 20);
+    assertThrows(RegexSyntaxErrorException.class, () -> cache.get("(ab"));
+    assertThrows(RegexSyntaxErrorException.class, () -> cache.get("(ab"));
+    assertEquals(2, cache.getLoadCount());
+    assertEquals(0, cache.size());
+  }
+
+  @Test(timeout = 10000)
+  public void concurrentRequestsShouldBeCompiledOnce() throws Exception {
+    final int THREADS = 8;
+    var started = new CountDownLatch(1);
+    var cache =
+        new RegexCache(
+            1 << 20,
+            regex -> {
+              try {
+                started.await();
+                // Give the other threads time to wait for this compilation.
+                Thread.sleep(100);
+              } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+              }
+              return RegexCache.compile(regex);
+            });
+
+    var executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      var futures = new ArrayList<Future<Boolean>>();
+      for (int i = 0; i < THREADS; i++) {
+        futures.add(executor.submit(() -> cache.get("\\d+\\.\\d+").matches("3.14")));
+      }
+      started.countDown();
+      for (var future : futures) {
+        assertTrue(future.get());
+      }
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+    assertEquals(1, cache.getLoadCount());
+    assertEquals(THREADS, cache.getHitCount() + cache.getMissCount());
+  }
+}
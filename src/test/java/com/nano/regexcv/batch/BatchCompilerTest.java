@@ -0,0 +1,103 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.batch;
+
+import static org.junit.Assert.*;
+
+import com.nano.regexcv.dfa.OffHeapDfaTable;
+import com.nano.regexcv.syntax.RegexSyntaxErrorException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchCompilerTest {
+
+  private Path directory;
+
+  @Before
+  public void createDirectory() throws IOException {
+    directory = Files.createTempDirectory("regexcv");
+  }
+
+  @After
+  public void deleteDirectory() throws IOException {
+    try (var paths = Files.walk(directory)) {
+      for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  @Test
+  public void compileDfa() throws IOException {
+    var output = directory.resolve("out");
+    var pool = new ForkJoinPool(2);
+    try {
+      var results =
+          new BatchCompiler(BatchCompiler.Format.DFA, output, pool)
+              .compile(List.of("\\d+", "(ab", "(\\w+)@(\\w+)"));
+      assertEquals(3, results.size());
+      assertEquals(output.resolve("1.dfa"), results.get(0).output());
+      assertNull(results.get(0).error());
+      assertNull(results.get(1).output());
+      assertTrue(results.get(1).error() instanceof RegexSyntaxErrorException);
+      assertEquals(3, results.get(2).index());
+
+      try (var table = OffHeapDfaTable.map(results.get(2).output())) {
+        assertTrue(table.matches("foo@bar"));
+        assertFalse(table.matches("foo@"));
+      }
+      assertFalse(Files.exists(output.resolve("2.dfa")));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void compileDotAndStats() throws IOException {
+    var dot =
+        new BatchCompiler(BatchCompiler.Format.DOT, directory)
+            .compile(List.of(7, 9), List.of("a|b", "c*"));
+    assertEquals(directory.resolve("9.dot"), dot.get(1).output());
+    assertTrue(Files.readString(dot.get(0).output()).startsWith("digraph"));
+
+    var stats = new BatchCompiler(BatchCompiler.Format.STATS, directory).compile(List.of("[a-z]+"));
+    var json = Files.readString(stats.get(0).output());
+    assertTrue(json.contains("\"name\": \"parse\""));
+    assertTrue(json.contains("\"name\": \"minimization\""));
+  }
+
+  @Test
+  public void command() throws IOException {
+    var input = directory.resolve("regexes.txt");
+    var output = directory.resolve("out");
+    Files.writeString(input, "a+\n\n(ab\nb*\n");
+
+    assertEquals(8, BatchCommand.run("-o", output.toString(), "-j", "2", input.toString()));
+    assertTrue(Files.exists(output.resolve("1.dot")));
+    assertFalse(Files.exists(output.resolve("2.dot")));
+    assertTrue(Files.exists(output.resolve("4.dot")));
+
+    assertEquals(5, BatchCommand.run("-o", output.toString(), input + ".missing"));
+    assertEquals(22, BatchCommand.run("-o", output.toString(), "-f", "svg", input.toString()));
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.dfa;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class AhoCorasickTableTest {
+
+  private static String randomString(Random random, int maxLength) {
+    var buf = new StringBuilder();
+    var length = random.nextInt(maxLength + 1);
+    for (int i = 0; i < length; i++) {
+      buf.append((char) ('a' + random.nextInt(3)));
+    }
+    return buf.toString();
+  }
+
+  @Test
+  public void randomWords() {
+    var random = new Random(42);
+    for (int round = 0; round < 50; round++) {
+      var words = new ArrayList<String>();
+      for (int i = 1 + random.nextInt(20); i > 0; i--) {
+        var word = randomString(random, 6);
+        if (!word.isEmpty()) {
+          words.add(word);
+        }
+      }
+      var bytes = words.stream().map(w -> w.getBytes(StandardCharsets.UTF_8)).toList();
+      // Every state dense, only the start state dense, and a mix of both.
+      for (var denseEntries : new int[] {Integer.MAX_VALUE, 0, 16}) {
+        var table = AhoCorasickTable.of(bytes, denseEntries);
+        for (int i = 0; i < 200; i++) {
+          var text = randomString(random, 12);
+          var expected = words.stream().anyMatch(text::endsWith);
+          assertEquals(words + ": " + text, expected, table.matches(text));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void denseStates() {
+    var words = List.of("he", "she", "his", "hers");
+    var table = AhoCorasickTable.of(words);
+    assertEquals(10, table.getStateCount());
+    assertEquals(10, table.getDenseStateCount());
+    // The classes are 'other', 'e', 'h', 'i', 'r' and 's'.
+    assertEquals(6, table.getClassCount());
+    var bytes = words.stream().map(w -> w.getBytes(StandardCharsets.UTF_8)).toList();
+    assertEquals(2, AhoCorasickTable.of(bytes, 12).getDenseStateCount());
+  }
+
+  @Test
+  public void utf8Literals() {
+    var table = new Utf8DfaTable(AhoCorasickTable.of(List.of("例子", "😀")));
+    assertTrue(table.matches("例子"));
+    assertTrue(table.matches("a 😀"));
+    assertFalse(table.matches(""));
+    assertFalse(table.matches("例子 "));
+
+    // The empty literal matches every input.
+    table = new Utf8DfaTable(AhoCorasickTable.of(List.of("例子", "")));
+    assertTrue(table.matches(""));
+    assertTrue(table.matches("例子 "));
+
+    table = new Utf8DfaTable(AhoCorasickTable.of(List.of("例子", "\ud83d")));
+    assertFalse(table.matches("\ud83d"));
+    assertFalse(table.matches("😀"));
+    assertFalse(table.matches(new byte[] {(byte) 0xE4, (byte) 0xBE}));
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.dfa;
+
+import static org.junit.Assert.*;
+
+import com.nano.regexcv.RegexCache;
+import com.nano.regexcv.RegexTestCase;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import org.junit.Test;
+
+public class DfaStreamMatcherTest {
+
+  @Test
+  public void chunkedInputShouldMatchLikeWholeInput() throws IOException {
+    for (var testCase : RegexTestCase.parseFile("regex_test_cases.txt")) {
+      for (var pattern : testCase.patterns) {
+        var table = RegexCache.compile(pattern);
+        var matcher = table.newStreamMatcher();
+        for (var text : testCase.strsShouldBeMatched) {
+          assertTrue(pattern + ": " + text, feedInChunks(matcher, text));
+        }
+        for (var text : testCase.strsShouldNotBeMatched) {
+          assertFalse(pattern + ": " + text, feedInChunks(matcher, text));
+        }
+      }
+    }
+  }
+
+  /** Feeds the text in chunks of 1, 2, 3... characters with different kinds of buffers. */
+  private static boolean feedInChunks(DfaStreamMatcher matcher, String text) {
+    var chars = text.toCharArray();
+    var i = 0;
+    for (int len = 1; i < chars.length; i += len, len++) {
+      len = Math.min(len, chars.length - i);
+      switch (len % 3) {
+        case 0 -> matcher.feed(chars, i, len);
+        case 1 -> matcher.feed(CharBuffer.wrap(chars, i, len));
+        default -> matcher.feed(CharBuffer.wrap(text, i, i + len));
+      }
+    }
+    assertEquals(text.length(), matcher.getPosition());
+    return matcher.end();
+  }
+
+  @Test
+  public void matchesReader() throws IOException {
+    var table = RegexCache.compile("(\\w+\\s)*\\w+");
+    var text = "lorem ipsum ".repeat(10000) + "end";
+    assertTrue(DfaStreamMatcher.matches(table, new StringReader(text)));
+    assertFalse(DfaStreamMatcher.matches(table, new StringReader(text + " ")));
+  }
+
+  @Test
+  public void deadMatcherShouldStopReading() throws IOException {
+    var table = RegexCache.compile("a*");
+    var reader =
+        new Reader() {
+          int reads = 0;
+
+          @Override
+          public int read(char[] cbuf, int off, int len) {
+            reads++;
+            cbuf[off] = 'b';
+            return 1;
+          }
+
+          @Override
+          public void close() {}
+        };
+    assertFalse(DfaStreamMatcher.matches(table, reader));
+    assertEquals(1, reader.reads);
+  }
+
+  @Test
+  public void matchedSoFar() {
+    var matcher = RegexCache.compile("ab+").newStreamMatcher();
+    assertFalse(matcher.feed("a").isMatched());
+    assertTrue(matcher.feed("bb").isMatched());
+    assertFalse(matcher.feed("c").isMatched());
+    assertTrue(matcher.isDead());
+    assertFalse(matcher.end());
+    assertTrue(matcher.feed("ab").end());
+  }
+
+  @Test
+  public void invalidRangesShouldBeRejected() {
+    var matcher = RegexCache.compile("a*").newStreamMatcher();
+    var chars = "aaaa".toCharArray();
+    assertThrows(IndexOutOfBoundsException.class, () -> matcher.feed(chars, -1, 2));
+    assertThrows(IndexOutOfBoundsException.class, () -> matcher.feed(chars, 3, 2));
+    // off + len overflows to a negative number.
+    assertThrows(IndexOutOfBoundsException.class, () -> matcher.feed(chars, 2, Integer.MAX_VALUE));
+    assertEquals(0, matcher.getPosition());
+    assertTrue(matcher.feed(chars, 1, 3).end());
+  }
+}
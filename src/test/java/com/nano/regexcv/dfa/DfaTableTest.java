@@ -0,0 +1,222 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.dfa;
+
+import static org.junit.Assert.*;
+
+import com.nano.regexcv.IPattern;
+import com.nano.regexcv.RegexTestCase;
+import com.nano.regexcv.table.ICharsNumTable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.stream.Stream;
+import org.junit.Test;
+
+public class DfaTableTest {
+
+  private static class DfaTablePattern implements IPattern {
+    private final DfaPattern dfaPattern;
+    private final DfaTable table;
+
+    public DfaTablePattern(DfaPattern dfaPattern, DfaTable table) {
+      this.dfaPattern = dfaPattern;
+      this.table = table;
+    }
+
+    @Override
+    public boolean matches(String text) {
+      return table.matches(text);
+    }
+
+    @Override
+    public String getPattern() {
+      return dfaPattern.getPattern();
+    }
+
+    @Override
+    public String getInformation() {
+      return String.format("(%s, %s)", table.getClass().getSimpleName(), dfaPattern.pattern);
+    }
+
+    @Override
+    public ICharsNumTable getTable() {
+      return dfaPattern.getTable();
+    }
+  }
+
+  /** A table that pretends to be large, so {@code matchAll} interleaves its inputs. */
+  private static class LargeDfaTable extends DfaTable {
+    private final DfaTable table;
+
+    public LargeDfaTable(DfaTable table) {
+      this.table = table;
+    }
+
+    @Override
+    public int getStateCount() {
+      return table.getStateCount();
+    }
+
+    @Override
+    public int getClassCount() {
+      return table.getClassCount();
+    }
+
+    @Override
+    public int getStartState() {
+      return table.getStartState();
+    }
+
+    @Override
+    public boolean isFinalState(int state) {
+      return table.isFinalState(state);
+    }
+
+    @Override
+    public int classOf(char ch) {
+      return table.classOf(ch);
+    }
+
+    @Override
+    public int nextState(int state, int charClass) {
+      return table.nextState(state, charClass);
+    }
+
+    @Override
+    public long sizeInBytes() {
+      return INTERLEAVING_THRESHOLD;
+    }
+  }
+
+  @Test
+  public void heapTableTest() throws IOException {
+    for (var testCase : RegexTestCase.parseFile("regex_test_cases.txt")) {
+      for (var pattern : testCase.patterns) {
+        var dfaPattern = new DfaPattern(pattern);
+        dfaPattern.minimizeDFA();
+        runTestCase(testCase, new DfaTablePattern(dfaPattern, HeapDfaTable.of(dfaPattern.dfa)));
+      }
+    }
+  }
+
+  @Test
+  public void offHeapTableTest() throws IOException {
+    for (var testCase : RegexTestCase.parseFile("regex_test_cases.txt")) {
+      for (var pattern : testCase.patterns) {
+        var dfaPattern = new DfaPattern(pattern);
+        try (var table = OffHeapDfaTable.allocate(dfaPattern.dfa)) {
+          runTestCase(testCase, new DfaTablePattern(dfaPattern, table));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void matchAllTest() throws IOException {
+    var testCases = RegexTestCase.parseFile("regex_test_cases.txt");
+    var inputs =
+        Arrays.stream(testCases)
+            .flatMap(
+                tc ->
+                    Stream.concat(
+                        Arrays.stream(tc.strsShouldBeMatched),
+                        Arrays.stream(tc.strsShouldNotBeMatched)))
+            .toArray(String[]::new);
+    for (var testCase : testCases) {
+      for (var pattern : testCase.patterns) {
+        var dfaPattern = new DfaPattern(pattern);
+        dfaPattern.minimizeDFA();
+        var table = HeapDfaTable.of(dfaPattern.dfa);
+        var out = new boolean[inputs.length];
+        table.matchAll(inputs, out);
+        for (int i = 0; i < inputs.length; i++) {
+          assertEquals(pattern + ": " + inputs[i], table.matches(inputs[i]), out[i]);
+        }
+        new LargeDfaTable(table).matchAll(inputs, out);
+        for (int i = 0; i < inputs.length; i++) {
+          assertEquals(pattern + ": " + inputs[i], table.matches(inputs[i]), out[i]);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void mappedTableTest() throws IOException {
+    var dfaPattern = new DfaPattern("(\\w+@\\w+)|[^a-z]*");
+    var file = Files.createTempFile("regexcv", ".dfa");
+    try {
+      OffHeapDfaTable.create(dfaPattern.dfa, file).close();
+      try (var table = OffHeapDfaTable.map(file)) {
+        var expected = HeapDfaTable.of(dfaPattern.dfa);
+        assertEquals(expected.getStateCount(), table.getStateCount());
+        assertEquals(expected.getClassCount(), table.getClassCount());
+        assertTrue(table.matches("foo@bar"));
+        assertTrue(table.matches("ABC 123"));
+        assertFalse(table.matches("foo@"));
+        assertFalse(table.matches("abc"));
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void closedTableShouldNotBeUsed() {
+    var table = OffHeapDfaTable.allocate(new DfaPattern("abc").dfa);
+    table.close();
+    assertThrows(IllegalStateException.class, () -> table.matches("abc"));
+  }
+
+  @Test
+  public void mappingInvalidFileShouldFail() throws IOException {
+    var file = Files.createTempFile("regexcv", ".dfa");
+    try {
+      Files.write(file, new byte[2048]);
+      assertThrows(IOException.class, () -> OffHeapDfaTable.map(file));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void mappingCorruptHeaderShouldFail() throws IOException {
+    var file = Files.createTempFile("regexcv", ".dfa");
+    try {
+      OffHeapDfaTable.create(new DfaPattern("abc").dfa, file).close();
+      var bytes = Files.readAllBytes(file);
+      // The state and class counts at the bytes 8-15, little-endian.
+      int[][] counts = {
+        {-1, 3}, {3, -1}, {Integer.MAX_VALUE, Integer.MAX_VALUE}, {1 << 16, 1 << 16}
+      };
+      for (var pair : counts) {
+        var corrupt = ByteBuffer.wrap(bytes.clone()).order(ByteOrder.LITTLE_ENDIAN);
+        corrupt.putInt(8, pair[0]).putInt(12, pair[1]);
+        Files.write(file, corrupt.array());
+        assertThrows(IOException.class, () -> OffHeapDfaTable.map(file));
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  private static void runTestCase(RegexTestCase tc, IPattern pattern) {
+    pattern.test(true, tc.strsShouldBeMatched);
+    pattern.test(false, tc.strsShouldNotBeMatched);
+  }
+}
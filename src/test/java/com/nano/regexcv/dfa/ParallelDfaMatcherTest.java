@@ -0,0 +1,145 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.dfa;
+
+import static org.junit.Assert.*;
+
+import com.nano.regexcv.RegexCache;
+import com.nano.regexcv.RegexTestCase;
+import com.nano.regexcv.grep.Grep;
+import com.nano.regexcv.table.ICharsNumTable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+
+public class ParallelDfaMatcherTest {
+
+  @Test
+  public void matchesTest() throws IOException {
+    var pool = new ForkJoinPool(4);
+    try {
+      for (var testCase : RegexTestCase.parseFile("regex_test_cases.txt")) {
+        for (var pattern : testCase.patterns) {
+          var dfaPattern = new DfaPattern(pattern);
+          dfaPattern.minimizeDFA();
+          var table = HeapDfaTable.of(dfaPattern.dfa);
+          for (var chunkSize : new int[] {1, 2, 3, 100}) {
+            var matcher = new ParallelDfaMatcher(table, pool, chunkSize);
+            for (var str : testCase.strsShouldBeMatched) {
+              assertTrue(pattern + ": " + str, matcher.matches(str));
+            }
+            for (var str : testCase.strsShouldNotBeMatched) {
+              assertFalse(pattern + ": " + str, matcher.matches(str));
+            }
+          }
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void countTest() {
+    var table = Grep.compileSearchTable("(ab)|(a+c)").getTable();
+    var input = "xxabyaaacab".repeat(300) + "aaaaaaaaaaaaaaaaaaa".repeat(10) + "c";
+    var bytes = ByteBuffer.wrap(input.getBytes(StandardCharsets.US_ASCII));
+    var expected = count(table, input);
+    assertEquals(901, expected);
+    for (var chunkSize : new int[] {1, 7, 64, 65, 1000, 1 << 20}) {
+      var matcher = new ParallelDfaMatcher(table, ForkJoinPool.commonPool(), chunkSize);
+      assertEquals(expected, matcher.count(input));
+      assertEquals(expected, matcher.count(bytes));
+      assertTrue(matcher.matches(input));
+    }
+  }
+
+  @Test
+  public void chunkBoundsNearMaxLength() {
+    // The length plus the chunk size overflows an int, which used to leave a single chunk, so only
+    // the first chunkSize characters were counted.
+    var length = Integer.MAX_VALUE;
+    assertEquals(2, ParallelDfaMatcher.chunkCount(length, 1 << 30));
+    assertEquals(1 << 30, ParallelDfaMatcher.chunkStart(1, 1 << 30));
+    assertEquals(length, ParallelDfaMatcher.chunkEnd(1, length, 1 << 30));
+
+    assertEquals(1, ParallelDfaMatcher.chunkCount(length, length));
+    assertEquals(length, ParallelDfaMatcher.chunkEnd(0, length, length));
+
+    // 2147483647 = 3 * 715827882 + 1
+    assertEquals(715827883, ParallelDfaMatcher.chunkCount(length, 3));
+    assertEquals(length - 1, ParallelDfaMatcher.chunkStart(715827882, 3));
+    assertEquals(length, ParallelDfaMatcher.chunkEnd(715827882, length, 3));
+    assertEquals(length - 1, ParallelDfaMatcher.chunkEnd(715827881, length, 3));
+
+    assertEquals(1, ParallelDfaMatcher.chunkCount(0, 1 << 30));
+    assertEquals(0, ParallelDfaMatcher.chunkEnd(0, 0, 1 << 30));
+  }
+
+  @Test
+  public void partialLastChunk() {
+    var matcher = new ParallelDfaMatcher(RegexCache.compile("a*"), ForkJoinPool.commonPool(), 4);
+    var input = "a".repeat(10);
+    assertEquals(10, matcher.count(input));
+    assertTrue(matcher.matches(input));
+    assertFalse(matcher.matches("aaaaaaaaab"));
+  }
+
+  @Test
+  public void utf8Input() {
+    var table = Utf8DfaTable.compile("(\\w|中|文)+").getTable();
+    var matcher = new ParallelDfaMatcher(table, ForkJoinPool.commonPool(), 5);
+    var text = "中文abc".repeat(100);
+    assertTrue(matcher.matches(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8))));
+    assertFalse(matcher.matches(ByteBuffer.wrap((text + "!").getBytes(StandardCharsets.UTF_8))));
+    assertFalse(matcher.matches(ByteBuffer.wrap(new byte[] {(byte) 0xE4, 'a'})));
+  }
+
+  @Test
+  public void emptyInput() {
+    var matcher = new ParallelDfaMatcher(table("a*"));
+    assertTrue(matcher.matches(""));
+    assertEquals(0, matcher.count(""));
+    assertFalse(new ParallelDfaMatcher(table("a+")).matches(""));
+  }
+
+  private static DfaTable table(String regex) {
+    var dfaPattern = new DfaPattern(regex);
+    dfaPattern.minimizeDFA();
+    return HeapDfaTable.of(dfaPattern.dfa);
+  }
+
+  private static long count(DfaTable table, String input) {
+    var state = table.getStartState();
+    var count = 0L;
+    for (int i = 0; i < input.length(); i++) {
+      var charClass = table.classOf(input.charAt(i));
+      if (charClass == ICharsNumTable.INVALID_CHAR_NUM) {
+        break;
+      }
+      state = table.nextState(state, charClass);
+      if (state == DfaTable.DEAD_STATE) {
+        break;
+      }
+      if (table.isFinalState(state)) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
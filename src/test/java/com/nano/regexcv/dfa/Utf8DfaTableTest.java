@@ -0,0 +1,142 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.dfa;
+
+import static org.junit.Assert.*;
+
+import com.nano.regexcv.IPattern;
+import com.nano.regexcv.RegexTestCase;
+import com.nano.regexcv.table.ICharsNumTable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class Utf8DfaTableTest {
+
+  private static class Utf8Pattern implements IPattern {
+    private final String pattern;
+    private final Utf8DfaTable table;
+
+    public Utf8Pattern(String pattern) {
+      this.pattern = pattern;
+      this.table = Utf8DfaTable.compile(pattern);
+    }
+
+    @Override
+    public boolean matches(String text) {
+      var bytes = text.getBytes(StandardCharsets.UTF_8);
+      var matched = table.matches(bytes);
+      assertEquals(matched, table.matches(ByteBuffer.wrap(bytes)));
+      return matched;
+    }
+
+    @Override
+    public String getPattern() {
+      return pattern;
+    }
+
+    @Override
+    public String getInformation() {
+      return String.format("(Utf8, %s)", pattern);
+    }
+
+    @Override
+    public ICharsNumTable getTable() {
+      return new DfaPattern(pattern).getTable();
+    }
+  }
+
+  @Test
+  public void utf8TableTest() throws IOException {
+    for (var testCase : RegexTestCase.parseFile("regex_test_cases.txt")) {
+      for (var pattern : testCase.patterns) {
+        var utf8Pattern = new Utf8Pattern(pattern);
+        utf8Pattern.test(true, encodable(testCase.strsShouldBeMatched));
+        utf8Pattern.test(false, encodable(testCase.strsShouldNotBeMatched));
+      }
+    }
+  }
+
+  @Test
+  public void multiByteCharacters() {
+    var table = Utf8DfaTable.compile("[α-ω]+\\s[^a-z]");
+    assertTrue(table.matches("αβγ 中"));
+    assertTrue(table.matches("ω ߿"));
+    assertTrue(table.matches("ω ￿"));
+    assertFalse(table.matches("αβγ a"));
+    assertFalse(table.matches("αβγ"));
+
+    table = Utf8DfaTable.compile("ab.");
+    assertTrue(table.matches("ab€"));
+    assertFalse(table.matches(new byte[] {'a', 'b', (byte) 0xE2, (byte) 0x82}));
+    assertFalse(table.matches(new byte[] {'a', 'b', (byte) 0xFF}));
+    // "\uD800" encoded with 3 bytes is malformed UTF-8.
+    assertFalse(table.matches(new byte[] {'a', 'b', (byte) 0xED, (byte) 0xA0, (byte) 0x80}));
+  }
+
+  @Test
+  public void surrogatePairs() {
+    var table = Utf8DfaTable.compile("(😀)+");
+    assertTrue(table.matches("😀😀"));
+    assertFalse(table.matches("😁"));
+
+    // Any code point, so the two halves of a pair are not matched separately.
+    table = Utf8DfaTable.compile("a(..)*b");
+    assertTrue(table.matches("a😀😁b"));
+    assertTrue(table.matches("a中😀b"));
+    assertFalse(table.matches("a😀b"));
+
+    table = Utf8DfaTable.compile("[😀-😎]+[^😀-😎]");
+    assertTrue(table.matches("😀😎中"));
+    assertTrue(table.matches("😀😏"));
+    assertFalse(table.matches("😀😎"));
+
+    table = Utf8DfaTable.compile("[\uD83D][\uDE00-\uDE4F]");
+    assertTrue(table.matches("😀"));
+    assertTrue(table.matches("🙏"));
+    assertFalse(table.matches("🙐"));
+  }
+
+  @Test(timeout = 10000)
+  public void propertyClasses() {
+    // A supplementary class once expanded to surrogate pairs, which took minutes to encode.
+    var table = Utf8DfaTable.compile("(\\p{L})*\\W");
+    assertTrue(table.matches("ab中𠀀 "));
+    assertTrue(table.matches("𠀀😀"));
+    assertFalse(table.matches("ab"));
+    assertFalse(table.matches("a😀😀"));
+    assertFalse(table.matches("a b"));
+    assertTrue(table.getTable().getStateCount() < 400);
+
+    String[] regexes = {"(\\p{L})*\\W", "(\\p{L}|\\d)+", "[^\\p{L}]+", "\\p{So}𠀀?"};
+    String[] texts = {"", "a", "1", " ", "中", "𠀀", "😀", "a𠀀1", "😀😀", "𠀀 ", "😀𠀀", "é😀"};
+    for (var regex : regexes) {
+      var utf8 = Utf8DfaTable.compile(regex);
+      var utf16 = new DfaPattern(regex);
+      for (var text : texts) {
+        assertEquals(regex + " on " + text, utf16.matches(text), utf8.matches(text));
+      }
+    }
+  }
+
+  private static String[] encodable(String[] strs) {
+    return Arrays.stream(strs)
+        .filter(str -> StandardCharsets.UTF_8.newEncoder().canEncode(str))
+        .toArray(String[]::new);
+  }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.grep;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileTreeScannerTest {
+
+  private static final int FILES = 50;
+
+  private Path root;
+
+  @Before
+  public void createTree() throws IOException {
+    root = Files.createTempDirectory("regexcv");
+    for (int i = 0; i < FILES; i++) {
+      var dir = root.resolve("dir" + i % 7).resolve("sub" + i % 3);
+      Files.createDirectories(dir);
+      Files.writeString(dir.resolve("file" + i), "line\nfoo " + i + "\nbar\nfoo\n");
+    }
+    Files.writeString(root.resolve("empty"), "");
+  }
+
+  @After
+  public void deleteTree() throws IOException {
+    try (var paths = Files.walk(root)) {
+      for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  /** Collects the results and the lines of each file, checking that lines come before results. */
+  private static class Collector implements FileTreeScanner.ResultListener {
+    private final ArrayList<FileTreeScanner.FileResult> results = new ArrayList<>();
+    private final HashMap<Path, List<FileTreeScanner.Line>> lines = new HashMap<>();
+
+    @Override
+    public boolean onLine(Path file, FileTreeScanner.Line line) {
+      assertFalse(results.stream().anyMatch(result -> result.file().equals(file)));
+      lines.computeIfAbsent(file, k -> new ArrayList<>()).add(line);
+      return true;
+    }
+
+    @Override
+    public boolean onResult(FileTreeScanner.FileResult result) {
+      return results.add(result);
+    }
+  }
+
+  @Test
+  public void resultsShouldBeInWalkOrder() throws Exception {
+    var walked = walk(root);
+    for (var limit : new int[] {1, 3, 256}) {
+      var scanner = new FileTreeScanner(new Grep("foo"), FileTreeScanner.Mode.LINES, limit, limit);
+      var collector = new Collector();
+      scanner.scan(List.of(root), collector);
+
+      assertEquals(
+          walked, collector.results.stream().map(FileTreeScanner.FileResult::file).toList());
+      for (var result : collector.results) {
+        assertNull(result.error());
+        if (result.file().endsWith("empty")) {
+          assertEquals(0, result.matchedLines());
+          continue;
+        }
+        var i = result.file().getFileName().toString().substring("file".length());
+        var lines = collector.lines.get(result.file());
+        assertEquals(2, result.matchedLines());
+        assertEquals(2, lines.size());
+        assertEquals(2, lines.get(0).lineNumber());
+        assertEquals("foo " + i, new String(lines.get(0).bytes(), StandardCharsets.UTF_8));
+        assertEquals(4, lines.get(1).lineNumber());
+      }
+    }
+  }
+
+  @Test(timeout = 20000)
+  public void linesShouldBeStreamedThroughSmallBuffers() throws Exception {
+    var big = root.resolve("big");
+    Files.createDirectories(big);
+    for (int i = 0; i < 4; i++) {
+      Files.writeString(
+          big.resolve("file" + i), ("foo " + i + " " + "x".repeat(100) + "\n").repeat(5000));
+    }
+    var walked = walk(big);
+    // One open file and buffers smaller than a line: a file waits for the listener after every
+    // line, and the next file can only be opened once the previous one is done.
+    var collector = new Collector();
+    new FileTreeScanner(new Grep("foo"), FileTreeScanner.Mode.LINES, 1, 2, 10)
+        .scan(List.of(big), collector);
+    assertEquals(walked, collector.results.stream().map(FileTreeScanner.FileResult::file).toList());
+    for (var file : walked) {
+      var lines = collector.lines.get(file);
+      assertEquals(5000, lines.size());
+      for (int i = 0; i < lines.size(); i++) {
+        assertEquals(i + 1, lines.get(i).lineNumber());
+      }
+    }
+
+    // The scan stops while the scans of the files are waiting for the listener.
+    var count = new int[1];
+    new FileTreeScanner(new Grep("foo"), FileTreeScanner.Mode.LINES, 2, 2, 10)
+        .scan(
+            List.of(big),
+            new FileTreeScanner.ResultListener() {
+              @Override
+              public boolean onLine(Path file, FileTreeScanner.Line line) {
+                return ++count[0] < 10;
+              }
+
+              @Override
+              public boolean onResult(FileTreeScanner.FileResult result) {
+                return true;
+              }
+            });
+    assertEquals(10, count[0]);
+  }
+
+  @Test
+  public void countAndFilesWithMatches() throws Exception {
+    var counts = new ArrayList<Long>();
+    new FileTreeScanner(new Grep("(foo)|(bar)"), FileTreeScanner.Mode.COUNT)
+        .scan(List.of(root), result -> counts.add(result.matchedLines()));
+    assertEquals(FILES * 3, counts.stream().mapToLong(Long::longValue).sum());
+
+    var files = new ArrayList<Path>();
+    new FileTreeScanner(new Grep("foo 1\\d"), FileTreeScanner.Mode.FILES_WITH_MATCHES)
+        .scan(
+            List.of(root),
+            result -> {
+              if (result.matchedLines() > 0) {
+                files.add(result.file());
+              }
+              return true;
+            });
+    assertEquals(10, files.size());
+  }
+
+  @Test(timeout = 10000)
+  public void listenerShouldStopTheScan() throws Exception {
+    var results = new ArrayList<FileTreeScanner.FileResult>();
+    new FileTreeScanner(new Grep("foo"), FileTreeScanner.Mode.LINES, 2, 2)
+        .scan(List.of(root), result -> results.add(result) && results.size() < 5);
+    assertEquals(5, results.size());
+  }
+
+  @Test
+  public void missingFileShouldBeReported() throws Exception {
+    var missing = root.resolve("missing");
+    var results = new ArrayList<FileTreeScanner.FileResult>();
+    new FileTreeScanner(new Grep("foo"), FileTreeScanner.Mode.COUNT)
+        .scan(List.of(missing, root.resolve("empty")), results::add);
+    assertEquals(2, results.size());
+    assertEquals(missing, results.get(0).file());
+    assertNotNull(results.get(0).error());
+    assertNull(results.get(1).error());
+  }
+
+  /** Returns the regular files in the order of {@link Files#walkFileTree}. */
+  private static List<Path> walk(Path root) throws IOException {
+    var files = new ArrayList<Path>();
+    Files.walkFileTree(
+        root,
+        new SimpleFileVisitor<>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            files.add(file);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+    return files;
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.grep;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class GrepTest {
+
+  private static final String TEXT =
+      "first line\n" + "foo@bar.com\n" + "\n" + "中文 foo@例子\n" + "😀 no address\n" + "last@line";
+
+  @Test(timeout = 10000)
+  public void propertyClasses() {
+    // Unanchored, (\p{L})*\W finds the same lines as \W.
+    var table = Grep.compileSearchTable("(\\p{L})*\\W");
+    assertEquals(
+        Grep.compileSearchTable("\\W").getTable().getStateCount(),
+        table.getTable().getStateCount());
+    var grep = new Grep(table);
+    assertTrue(grep.find("𠀀𠀁 "));
+    assertTrue(grep.find("😀"));
+    assertFalse(grep.find("ab_12"));
+  }
+
+  @Test
+  public void find() {
+    var grep = new Grep("\\w+@\\w+");
+    assertTrue(grep.find("mail: foo@bar"));
+    assertTrue(grep.find("foo@bar and more"));
+    assertFalse(grep.find("foo@"));
+    assertFalse(grep.find(""));
+    assertTrue(new Grep("a*").find(""));
+  }
+
+  @Test
+  public void findLiterals() {
+    var keywords = List.of("error", "warn", "fatal", "panic", "错误", "😀🔥");
+    var regex = String.join("|", keywords.stream().map(k -> "(" + k + ")").toList());
+    var literalGrep = new Grep(regex);
+    // The same alternation with a character class is compiled by subset construction.
+    var dfaGrep = new Grep(regex + "|([x])");
+    for (var text : List.of("an error", "warning", "fat", "pani", "致命错误", "a😀🔥", "😀", "x", "")) {
+      assertEquals(text, dfaGrep.find(text) && !text.equals("x"), literalGrep.find(text));
+    }
+    // An empty alternative matches everywhere.
+    assertTrue(new Grep("(abc)|()").find("x"));
+  }
+
+  @Test
+  public void scan() throws IOException {
+    var file = createFile(TEXT);
+    try {
+      assertEquals(List.of("2:foo@bar.com", "6:last@line"), scan(new Grep("\\w+@\\w+"), file));
+      assertEquals(List.of("4:中文 foo@例子"), scan(new Grep("foo@例"), file));
+      assertEquals(List.of("5:😀 no address"), scan(new Grep("😀"), file));
+      assertEquals(List.of(), scan(new Grep("xyz"), file));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void scanInSmallWindows() throws IOException {
+    var file = createFile(TEXT);
+    try {
+      var table = Grep.compileSearchTable("[a-z]+@[a-z]+");
+      var expected = scan(new Grep(table), file);
+      // A window must be able to hold the longest line, or the line would be split.
+      for (int windowSize = longestLine(TEXT); windowSize < 48; windowSize++) {
+        var grep = new Grep(table, windowSize);
+        assertEquals(
+            "Window size: " + windowSize, expected.size(), grep.scan(file, (n, l) -> true));
+      }
+      assertEquals(expected, scan(new Grep(table, 24), file));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void malformedInputShouldNotMatch() throws IOException {
+    var file = Files.createTempFile("regexcv", ".txt");
+    try {
+      Files.write(
+          file,
+          new byte[] {
+            'a', (byte) 0xC3, 'b', '\n', 'a', (byte) 0xC3, (byte) 0xA9, '\n', (byte) 0xFF, 'a', 'b'
+          });
+      var lines = new ArrayList<Long>();
+      new Grep("(a.b)|(aé)|(ab)").scan(file, (n, l) -> lines.add(n));
+      assertEquals(List.of(2L, 3L), lines);
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void command() throws IOException {
+    var file = createFile(TEXT);
+    var other = createFile("nothing\n");
+    try {
+      var out = new ByteArrayOutputStream();
+      assertEquals(0, GrepCommand.run(out, "-n", "\\w+@\\w+", file.toString()));
+      assertEquals("2:foo@bar.com\n6:last@line\n", out.toString(StandardCharsets.UTF_8));
+
+      out.reset();
+      assertEquals(0, GrepCommand.run(out, "-c", "foo", file.toString(), other.toString()));
+      assertEquals(
+          String.format("%s:2\n%s:0\n", file, other), out.toString(StandardCharsets.UTF_8));
+
+      out.reset();
+      assertEquals(0, GrepCommand.run(out, "-l", "foo", file.toString(), other.toString()));
+      assertEquals(file + "\n", out.toString(StandardCharsets.UTF_8));
+
+      out.reset();
+      assertEquals(1, GrepCommand.run(out, "xyz", file.toString()));
+      assertEquals(0, out.size());
+
+      out.reset();
+      assertEquals(0, GrepCommand.run(out, "-r", "-n", "foo@", file.getParent().toString()));
+      assertTrue(out.toString(StandardCharsets.UTF_8).contains(file + ":2:foo@bar.com\n"));
+
+      assertEquals(8, GrepCommand.run(out, "(ab", file.toString()));
+      assertEquals(22, GrepCommand.run(out, "foo"));
+      assertEquals(5, GrepCommand.run(out, "foo", file + ".missing"));
+    } finally {
+      Files.delete(file);
+      Files.delete(other);
+    }
+  }
+
+  private static Path createFile(String text) throws IOException {
+    var file = Files.createTempFile("regexcv", ".txt");
+    Files.writeString(file, text);
+    return file;
+  }
+
+  private static int longestLine(String text) {
+    return text.lines()
+        .mapToInt(line -> line.getBytes(StandardCharsets.UTF_8).length + 1)
+        .max()
+        .getAsInt();
+  }
+
+  private static List<String> scan(Grep grep, Path file) throws IOException {
+    var lines = new ArrayList<String>();
+    grep.scan(
+        file,
+        (lineNumber, line) -> {
+          var bytes = new byte[line.remaining()];
+          line.get(bytes);
+          lines.add(lineNumber + ":" + new String(bytes, StandardCharsets.UTF_8));
+          return true;
+        });
+    return lines;
+  }
+}
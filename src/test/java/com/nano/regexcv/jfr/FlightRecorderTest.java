@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.jfr;
+
+import static org.junit.Assert.*;
+
+import com.nano.regexcv.RegexCache;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+public class FlightRecorderTest {
+
+  private static List<RecordedEvent> record(Runnable runnable) throws IOException {
+    var file = Files.createTempFile("regexcv", ".jfr");
+    try (var recording = new Recording()) {
+      recording.enable(PassEvent.class);
+      recording.enable(MatchEvent.class);
+      recording.start();
+      runnable.run();
+      recording.stop();
+      recording.dump(file);
+      return RecordingFile.readAllEvents(file);
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void compilationShouldEmitPassEvents() throws IOException {
+    var regex = "(a|b)*abb";
+    var events = record(() -> RegexCache.compile(regex));
+    var passEvents =
+        events.stream()
+            .filter(e -> e.getEventType().getName().equals("com.nano.regexcv.Pass"))
+            .toList();
+
+    assertEquals(
+        List.of(
+            "parse",
+            "simplification",
+            "character-set-collection",
+            "nfa-construction",
+            "subset-construction",
+            "minimization"),
+        passEvents.stream().map(e -> e.getString("pass")).toList());
+    for (var event : passEvents) {
+      assertEquals(regex.hashCode(), event.getInt("patternHash"));
+    }
+    assertEquals(2, passEvents.get(2).getLong("tableClasses"));
+    assertEquals(4, passEvents.get(5).getLong("states"));
+  }
+
+  @Test
+  public void matchesShouldEmitMatchEvents() throws IOException {
+    var table = new RecordingDfaTable(RegexCache.compile("a+"), "a+", 1);
+    var events =
+        record(
+            () -> {
+              assertTrue(table.matches("aaa"));
+              assertFalse(table.matches("ab"));
+            });
+    var matchEvents =
+        events.stream()
+            .filter(e -> e.getEventType().getName().equals("com.nano.regexcv.Match"))
+            .toList();
+
+    assertEquals(2, matchEvents.size());
+    assertEquals(3, matchEvents.get(0).getInt("inputLength"));
+    assertTrue(matchEvents.get(0).getBoolean("matched"));
+    assertFalse(matchEvents.get(1).getBoolean("matched"));
+  }
+}
@@ -15,8 +15,13 @@
  */
 package com.nano.regexcv.nfa;
 
+import static org.junit.Assert.*;
+
 import com.nano.regexcv.RegexTestCase;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import org.junit.Test;
 
 public class NfaTest {
@@ -29,6 +34,46 @@ public class NfaTest {
     }
   }
 
+  @Test
+  public void literalAlternationTest() {
+    var words = new ArrayList<String>();
+    for (var prefix : List.of("c", "b", "h", "m")) {
+      for (var suffix : List.of("at", "ats", "og", "ogs")) {
+        words.add(prefix + suffix);
+      }
+    }
+    var regex = String.join("|", words.stream().map(w -> "(" + w + ")").toList());
+
+    var nfaPattern = new NfaPattern(regex);
+    // The minimal automaton shares the suffixes: c|b|h|m, a|o, t|g, s and the end of the NFA.
+    assertEquals(7, countStates(nfaPattern.nfa));
+    nfaPattern.test(true, words.toArray(String[]::new));
+    nfaPattern.test(false, "", "c", "ca", "cats" + "s", "cog" + "at", "dog");
+
+    var withEmpty = new NfaPattern("(" + regex + "|()|(cat))+");
+    withEmpty.test(true, "", "cat", "catbogs", "mogcatcat");
+    withEmpty.test(false, "ca", "catx");
+
+    var notLiteral = new NfaPattern(regex + "|(d.g)");
+    notLiteral.test(true, "cats", "dig");
+    notLiteral.test(false, "dg");
+  }
+
+  private static int countStates(Nfa nfa) {
+    var marked = new HashSet<NfaState>();
+    var stack = new ArrayList<NfaState>();
+    stack.add(nfa.getStart());
+    marked.add(nfa.getStart());
+    while (!stack.isEmpty()) {
+      for (var successors : stack.remove(stack.size() - 1).getTransitions()) {
+        if (successors != null) {
+          successors.stream().filter(marked::add).forEach(stack::add);
+        }
+      }
+    }
+    return marked.size();
+  }
+
   private void runTestCase(RegexTestCase tc) {
     for (var pattern : tc.patterns) {
       var nfaPattern = new NfaPattern(pattern);
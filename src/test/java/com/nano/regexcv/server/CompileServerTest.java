@@ -0,0 +1,154 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.server;
+
+import static org.junit.Assert.*;
+
+import com.nano.regexcv.util.Json;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompileServerTest {
+
+  private Path directory;
+
+  @Before
+  public void createDirectory() throws IOException {
+    directory = Files.createTempDirectory("regexcv");
+  }
+
+  @After
+  public void deleteDirectory() throws IOException {
+    Files.delete(directory);
+  }
+
+  @Test
+  public void parseRequest() {
+    assertEquals(
+        new CompileServer.Request("a|b", CompileServer.Mode.NFA, false),
+        CompileServer.Request.parse("{\"regex\": \"a|b\"}"));
+    assertEquals(
+        new CompileServer.Request("\\d\"", CompileServer.Mode.MIN, true),
+        CompileServer.Request.parse("{\"regex\":\"\\\\d\\\"\",\"mode\":\"min\",\"reduce\":true}"));
+    for (var line :
+        new String[] {
+          "",
+          "{}",
+          "{\"regex\": 1}",
+          "{\"regex\": \"a\", \"mode\": \"x\"}",
+          "{\"regex\": \"a\", \"reduce\": \"yes\"}",
+          "{\"regex\": \"a\"} {"
+        }) {
+      assertThrows(line, IllegalArgumentException.class, () -> CompileServer.Request.parse(line));
+    }
+  }
+
+  @Test
+  public void failingConverterShouldReturnError() throws IOException {
+    var socket = directory.resolve("regexcv.sock");
+    try (var server =
+        CompileServer.bind(
+            socket,
+            CompileServer.DEFAULT_CACHE_SIZE,
+            (request) -> {
+              if (request.regex().equals("boom")) {
+                throw new IllegalStateException("boom");
+              }
+              return "digraph {}";
+            })) {
+      var response = Json.parseFlatObject(server.handle("{\"regex\": \"boom\"}"));
+      assertEquals(false, response.get("ok"));
+      assertTrue(((String) response.get("error")).contains("boom"));
+      // The failure is not cached and does not break the following requests.
+      assertEquals(server.handle("{\"regex\": \"boom\"}"), server.handle("{\"regex\": \"boom\"}"));
+      response = Json.parseFlatObject(server.handle("{\"regex\": \"a\"}"));
+      assertEquals(true, response.get("ok"));
+      assertEquals("digraph {}", response.get("dot"));
+    }
+  }
+
+  @Test
+  public void handle() throws IOException {
+    try (var server = CompileServer.bind(directory.resolve("regexcv.sock"))) {
+      var response = Json.parseFlatObject(server.handle("{\"regex\": \"a*\", \"mode\": \"dfa\"}"));
+      assertEquals(true, response.get("ok"));
+      assertTrue(((String) response.get("dot")).startsWith("digraph"));
+      assertEquals(
+          server.handle("{\"regex\": \"a*\", \"mode\": \"dfa\"}"),
+          server.handle("{\"mode\": \"dfa\", \"regex\": \"a*\"}"));
+
+      response = Json.parseFlatObject(server.handle("{\"regex\": \"(ab\"}"));
+      assertEquals(false, response.get("ok"));
+      assertNotNull(response.get("error"));
+      response = Json.parseFlatObject(server.handle("not json"));
+      assertEquals(false, response.get("ok"));
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void serve() throws Exception {
+    var socket = directory.resolve("regexcv.sock");
+    var server = CompileServer.bind(socket);
+    var serving =
+        new Thread(
+            () -> {
+              try {
+                server.serve();
+              } catch (IOException e) {
+                throw new IllegalStateException(e);
+              }
+            });
+    serving.start();
+    try (var client = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+      client.connect(UnixDomainSocketAddress.of(socket));
+      var request =
+          "{\"regex\": \"[a-z]+\", \"mode\": \"min\", \"reduce\": true}\n\n{\"regex\": \"(\"}\n";
+      client.write(ByteBuffer.wrap(request.getBytes(StandardCharsets.UTF_8)));
+      var reader =
+          new BufferedReader(
+              new InputStreamReader(Channels.newInputStream(client), StandardCharsets.UTF_8));
+      assertEquals(true, Json.parseFlatObject(reader.readLine()).get("ok"));
+      assertEquals(false, Json.parseFlatObject(reader.readLine()).get("ok"));
+
+      // An oversized request is answered by an error, and the connection keeps working.
+      request =
+          "{\"regex\": \""
+              + "a".repeat(CompileServer.MAX_REQUEST_LENGTH)
+              + "\"}\n{\"regex\": \"a\"}\r\n";
+      client.write(ByteBuffer.wrap(request.getBytes(StandardCharsets.UTF_8)));
+      var response = Json.parseFlatObject(reader.readLine());
+      assertEquals(false, response.get("ok"));
+      assertTrue(((String) response.get("error")).contains("longer"));
+      assertEquals(true, Json.parseFlatObject(reader.readLine()).get("ok"));
+    } finally {
+      server.close();
+      serving.join();
+    }
+    assertFalse(Files.exists(socket));
+  }
+}
@@ -17,16 +17,53 @@ package com.nano.regexcv.syntax;
 
 import static org.junit.Assert.*;
 
+import com.nano.regexcv.dfa.HeapDfaTable;
+import com.nano.regexcv.dfa.SubsetConstructionPass;
+import com.nano.regexcv.nfa.RExpTree2NfaPass;
 import com.nano.regexcv.syntax.tree.RAlternation;
+import com.nano.regexcv.syntax.tree.RCharRangeList;
+import com.nano.regexcv.syntax.tree.RCodePointClass;
 import com.nano.regexcv.syntax.tree.RContatenation;
+import com.nano.regexcv.syntax.tree.ROneOrMore;
+import com.nano.regexcv.syntax.tree.ROptional;
+import com.nano.regexcv.syntax.tree.RSingleCharacter;
 import com.nano.regexcv.syntax.tree.RegularExpression;
+import com.nano.regexcv.table.CharacterSetCollector;
+import com.nano.regexcv.util.CharacterRange;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 import org.junit.Test;
 
 public class ParserTest {
 
   public static final String[] ERROR_REGEX = {
-    "[a-", "[z-a]", "[a-b", "[", "[w-\\q]", "(ab", "((ab)", "(ab))", "\\Poab", "a**", "*", "c++",
-    "+", "a??", "?", "a|*", "a|+", "a|?", ")"
+    "[a-",
+    "[z-a]",
+    "[a-b",
+    "[",
+    "[w-\\q]",
+    "(ab",
+    "((ab)",
+    "(ab))",
+    "\\Poab",
+    "a**",
+    "*",
+    "c++",
+    "+",
+    "a??",
+    "?",
+    "a|*",
+    "a|+",
+    "a|?",
+    ")",
+    "\\p",
+    "\\p{L",
+    "\\p{Foo}",
+    "\\p{IsFoo}",
+    "\\p{sc=Lu}",
+    "\\pX"
   };
 
   @Test(timeout = 2000)
@@ -57,4 +94,114 @@ public class ParserTest {
     RAlternation alternation = (RAlternation) concatenation.getRegexList().get(1);
     assertEquals(2, alternation.getRegexList().size());
   }
+
+  @Test
+  public void characterClasses() {
+    var parser = new RegexParser();
+    assertEquals("[a-z]", rangesOf(parser.accept("[a-z]")));
+    assertEquals("[\\-, a]", rangesOf(parser.accept("[a-]")));
+    assertEquals("[\\-, 0-9, a]", rangesOf(parser.accept("[a-\\d]")));
+    assertEquals("[\\-, 0-9, a]", rangesOf(parser.accept("[\\d-a]")));
+    assertEquals(
+        "[\\u0000-/, :-\\ud7ff, \\ue000-\\uffff] | [\\ud800-\\udbff][\\udc00-\\udfff]",
+        rangesOf(parser.accept("[^\\d]")));
+  }
+
+  @Test
+  public void supplementaryCodePoints() {
+    var parser = new RegexParser();
+    assertEquals("[\\ud83d][\\ude00-\\ude0e]", rangesOf(parser.accept("[😀-😎]")));
+    assertEquals("[a] | [\\ud83d][\\ude00]", rangesOf(parser.accept("[a😀]")));
+    assertEquals(
+        "[\\ud83c][\\udfff] | [\\ud83d][\\udc00-\\udfff] | [\\ud83e][\\udc00-\\udc01]",
+        rangesOf(parser.accept("[\uD83C\uDFFF-\uD83E\uDC01]")));
+    // The pair is one term, so the quantifier repeats both chars.
+    var tree = (RContatenation) ((ROneOrMore) parser.accept("😀+")).getQuiantifiedNode();
+    assertEquals("[\\ud83d][\\ude00]", rangesOf(tree));
+    // A lone surrogate is a char of its own.
+    assertEquals("[\\ud83d]", rangesOf(parser.accept("[\uD83D]")));
+  }
+
+  /** Describes a class, whose surrogate pairs are alternatives of concatenated classes. */
+  private static String rangesOf(RegularExpression regex) {
+    if (regex instanceof RCodePointClass codePoints) {
+      return rangesOf(codePoints.toUtf16());
+    }
+    if (regex instanceof RAlternation alternation) {
+      return alternation.getRegexList().stream()
+          .map(ParserTest::rangesOf)
+          .collect(Collectors.joining(" | "));
+    }
+    if (regex instanceof RContatenation concatenation) {
+      return concatenation.getRegexList().stream()
+          .map(ParserTest::rangesOf)
+          .collect(Collectors.joining());
+    }
+    if (regex instanceof RSingleCharacter single) {
+      return List.of(CharacterRange.of(single.getChar())).toString();
+    }
+    return Arrays.toString(((RCharRangeList) regex).getCharacterRanges());
+  }
+
+  @Test
+  public void predefinedNodesShouldBeShared() {
+    var tree = (RContatenation) new RegexParser().accept("\\d[0-9]a.");
+    var other = (RContatenation) new RegexParser().accept("\\da.");
+    assertSame(tree.getRegexList().get(0), tree.getRegexList().get(1));
+    assertSame(other.getRegexList().get(0), tree.getRegexList().get(0));
+    assertSame(other.getRegexList().get(1), tree.getRegexList().get(2));
+    assertSame(other.getRegexList().get(2), tree.getRegexList().get(3));
+  }
+
+  @Test
+  public void propertyClassesShouldBeSharedByAllNames() {
+    var tree = (RContatenation) new RegexParser().accept("\\p{Lu}\\p{IsLu}\\p{gc=Lu}\\P{Lu}");
+    var nodes = tree.getRegexList();
+    assertSame(nodes.get(0), nodes.get(1));
+    assertSame(nodes.get(0), nodes.get(2));
+    assertNotSame(nodes.get(0), nodes.get(3));
+    var other = (RContatenation) new RegexParser().accept("\\P{general_category=Lu}a");
+    assertSame(nodes.get(3), other.getRegexList().get(0));
+  }
+
+  @Test(timeout = 20000)
+  public void deepRegexShouldNotOverflowStack() throws Throwable {
+    final int DEPTH = 20000;
+    var regex = "(".repeat(DEPTH) + "ab|c" + ")?".repeat(DEPTH) + "d".repeat(DEPTH * 5);
+    var error = new AtomicReference<Throwable>();
+    // A small stack proves that the depth of the regex does not depend on the thread stack.
+    var thread =
+        new Thread(
+            null,
+            () -> {
+              try {
+                var tree = new RegexParser().accept(regex);
+                var node = ((RContatenation) tree).getRegexList().get(0);
+                for (int i = 0; i < DEPTH; i++) {
+                  node = ((ROptional) node).getQuiantifiedNode();
+                }
+                assertTrue(node instanceof RContatenation);
+
+                // The minimization is skipped, it is not linear in the number of states.
+                var table =
+                    new CharacterSetCollector()
+                        .next(new RExpTree2NfaPass())
+                        .next(new SubsetConstructionPass())
+                        .next(HeapDfaTable::of)
+                        .accept(tree);
+                assertTrue(table.matches("d".repeat(DEPTH * 5)));
+                assertTrue(table.matches("ac" + "d".repeat(DEPTH * 5)));
+                assertFalse(table.matches("d".repeat(DEPTH * 5 - 1)));
+              } catch (Throwable e) {
+                error.set(e);
+              }
+            },
+            "small-stack",
+            128 << 10);
+    thread.start();
+    thread.join();
+    if (error.get() != null) {
+      throw error.get();
+    }
+  }
 }
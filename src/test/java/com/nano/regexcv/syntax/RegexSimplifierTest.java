@@ -0,0 +1,126 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.syntax;
+
+import static org.junit.Assert.*;
+
+import com.nano.regexcv.RegexCache;
+import com.nano.regexcv.RegexTestCase;
+import com.nano.regexcv.dfa.SubsetConstructionPass;
+import com.nano.regexcv.nfa.RExpTree2NfaPass;
+import com.nano.regexcv.syntax.tree.RAlternation;
+import com.nano.regexcv.syntax.tree.RCharRangeList;
+import com.nano.regexcv.syntax.tree.RContatenation;
+import com.nano.regexcv.syntax.tree.REmpty;
+import com.nano.regexcv.syntax.tree.ROptional;
+import com.nano.regexcv.syntax.tree.RSingleCharacter;
+import com.nano.regexcv.syntax.tree.RZeroOrMore;
+import com.nano.regexcv.syntax.tree.RegularExpression;
+import com.nano.regexcv.table.CharacterSetCollector;
+import java.io.IOException;
+import org.junit.Test;
+
+public class RegexSimplifierTest {
+
+  private static RegularExpression simplify(String regex) {
+    return new RegexParser().next(new RegexSimplifier()).accept(regex);
+  }
+
+  private static int countDfaStates(RegularExpression tree) {
+    return new CharacterSetCollector()
+        .next(new RExpTree2NfaPass())
+        .next(new SubsetConstructionPass())
+        .accept(tree)
+        .getAllStates()
+        .length;
+  }
+
+  @Test
+  public void simplifiedRegexShouldMatchTheSameStrings() throws IOException {
+    for (var testCase : RegexTestCase.parseFile("regex_test_cases.txt")) {
+      for (var pattern : testCase.patterns) {
+        var table = RegexCache.compile(pattern);
+        for (var text : testCase.strsShouldBeMatched) {
+          assertTrue(pattern + ": " + text, table.matches(text));
+        }
+        for (var text : testCase.strsShouldNotBeMatched) {
+          assertFalse(pattern + ": " + text, table.matches(text));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void characterAlternativesShouldBeMerged() {
+    var tree = simplify("(a)|((b)|[0-9])|(c)");
+    assertTrue(tree instanceof RCharRangeList);
+    assertEquals(2, ((RCharRangeList) tree).getCharacterRanges().length);
+  }
+
+  @Test
+  public void commonPrefixesShouldBeFactored() {
+    // ab(c|d[ef]|x*)
+    var tree = simplify("(abc)|(abde)|(abdf)|(abx*)");
+    var elements = ((RContatenation) tree).getRegexList();
+    assertEquals(3, elements.size());
+    assertEquals('a', ((RSingleCharacter) elements.get(0)).getChar());
+    assertEquals('b', ((RSingleCharacter) elements.get(1)).getChar());
+
+    var parsed = new RegexParser().accept("(abc)|(abde)|(abdf)|(abx*)");
+    assertTrue(countDfaStates(tree) < countDfaStates(parsed));
+  }
+
+  @Test
+  public void emptyAlternativeShouldBeOptional() {
+    var tree = simplify("(ab)|()");
+    assertTrue(tree instanceof ROptional);
+    assertTrue(simplify("(a*)|()") instanceof RZeroOrMore);
+    assertTrue(simplify("(()|())") instanceof REmpty);
+  }
+
+  @Test
+  public void nestedQuantifiersShouldBeCollapsed() {
+    for (var regex : new String[] {"((a*)?)*", "(a+)*", "(a?)+", "(a+)?", "((a*)+)?"}) {
+      var tree = simplify(regex);
+      assertTrue(regex, tree instanceof RZeroOrMore);
+      assertTrue(regex, ((RZeroOrMore) tree).getQuiantifiedNode() instanceof RSingleCharacter);
+    }
+    assertTrue(simplify("((a)?)?") instanceof ROptional);
+    assertTrue(simplify("(()*)+") instanceof REmpty);
+  }
+
+  @Test
+  public void concatenationsShouldBeFlattened() {
+    var tree = simplify("a(b(c()d))e");
+    assertEquals(5, ((RContatenation) tree).getRegexList().size());
+  }
+
+  @Test
+  public void equalSubtreesShouldBeShared() {
+    // a(b*|c)b*, whose first b* is built again when the prefix a is factored out.
+    var tree = (RContatenation) simplify("((ab*)|(ac))b*");
+    var factored = (RAlternation) tree.getRegexList().get(1);
+    assertSame(tree.getRegexList().get(2), factored.getRegexList().get(0));
+  }
+
+  @Test
+  public void deepRegexShouldBeSimplified() {
+    final int DEPTH = 20000;
+    var tree = simplify("(".repeat(DEPTH) + "(ab)|c" + ")?".repeat(DEPTH));
+    var optional = (ROptional) tree;
+    assertFalse(optional.getQuiantifiedNode() instanceof ROptional);
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.syntax.tree;
+
+import static org.junit.Assert.*;
+
+import com.nano.regexcv.syntax.RegexParser;
+import java.util.List;
+import org.junit.Test;
+
+public class RTreeTraversalTest {
+
+  /** Prints a tree in prefix notation, so the order of the fold is visible. */
+  private static class Printer implements RTreeFolder<String> {
+
+    @Override
+    public String visit(RSingleCharacter node) {
+      return String.valueOf(node.getChar());
+    }
+
+    @Override
+    public String visit(RCharRange node) {
+      return node.getFromChar() + "-" + node.getToChar();
+    }
+
+    @Override
+    public String visit(RCharRangeList node) {
+      return "[" + node.getCharacterRanges().length + "]";
+    }
+
+    @Override
+    public String visit(RCodePointClass node) {
+      return "[" + node.getCodePointRanges().length / 2 + "]";
+    }
+
+    @Override
+    public String visit(RAlternation node, List<String> alternatives) {
+      return "|(" + String.join(" ", alternatives) + ")";
+    }
+
+    @Override
+    public String visit(RContatenation node, List<String> elements) {
+      return "&(" + String.join(" ", elements) + ")";
+    }
+
+    @Override
+    public String visit(REmpty node) {
+      return "ε";
+    }
+
+    @Override
+    public String visit(ROneOrMore node, String quantified) {
+      return "+" + quantified;
+    }
+
+    @Override
+    public String visit(ROptional node, String quantified) {
+      return "?" + quantified;
+    }
+
+    @Override
+    public String visit(RZeroOrMore node, String quantified) {
+      return "*" + quantified;
+    }
+  }
+
+  @Test
+  public void fold() {
+    var parser = new RegexParser();
+    assertEquals("a", RTreeTraversal.fold(parser.accept("a"), new Printer()));
+    assertEquals("ε", RTreeTraversal.fold(parser.accept(""), new Printer()));
+    assertEquals(
+        "&(a |(b c) *&(d +[1] ?ε))",
+        RTreeTraversal.fold(parser.accept("ab|c(d[ab]+()?)*"), new Printer()));
+    assertEquals("&(|(ε a) |(b ε))", RTreeTraversal.fold(parser.accept("|ab|"), new Printer()));
+  }
+
+  @Test
+  public void foldShared() {
+    var tree = (RContatenation) new RegexParser().accept("(\\d\\d\\d)\\.(\\d\\d\\d)\\.(\\d\\d\\d)");
+    var octets = tree.getRegexList();
+    assertSame(octets.get(0), octets.get(2));
+    assertSame(octets.get(0), octets.get(4));
+
+    var visits = new int[1];
+    var printer =
+        new Printer() {
+          @Override
+          public String visit(RCharRangeList node) {
+            visits[0]++;
+            return super.visit(node);
+          }
+        };
+    var expected = "&(&([1] [1] [1]) . &([1] [1] [1]) . &([1] [1] [1]))";
+    assertEquals(expected, RTreeTraversal.fold(tree, printer));
+    assertEquals(9, visits[0]);
+    visits[0] = 0;
+    assertEquals(expected, RTreeTraversal.foldShared(tree, printer));
+    assertEquals(1, visits[0]);
+  }
+
+  @Test
+  public void children() {
+    var tree = (RContatenation) new RegexParser().accept("a(b)*");
+    assertEquals(tree.getRegexList(), RTreeTraversal.children(tree));
+    var star = tree.getRegexList().get(1);
+    assertEquals(List.of(((RZeroOrMore) star).getQuiantifiedNode()), RTreeTraversal.children(star));
+    assertEquals(List.of(), RTreeTraversal.children(tree.getRegexList().get(0)));
+  }
+}
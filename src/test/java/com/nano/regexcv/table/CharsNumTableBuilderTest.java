@@ -16,8 +16,10 @@
 package com.nano.regexcv.table;
 
 import com.nano.regexcv.util.CharacterRange;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -39,26 +41,47 @@ public class CharsNumTableBuilderTest {
   }
 
   @Test
-  public void testingGetSortedCharArray() {
-    final var TEST_CASES =
-        new String[][] {
-          {"1-2", "1,2"},
-          {"1-2,1-2", "1,2"},
-          {"1-4,2-6,3-4", "1,2,3,4,6"},
-          {"1-1,2-2,3-3", "1,2,3"},
-          {"1-5,2-9,6-8", "1,2,5,6,8,9"},
-          {"1-5,2-9,6-8,7-7", "1,2,5,6,7,8,9"},
-          {"1-8,2-4,3-4,3-5,5-8", "1,2,3,4,5,8"},
-          {"1-9,2-5,3-5,4-5,5-5,6-8,7-8", "1,2,3,4,5,6,7,8,9"},
-        };
+  public void classesShouldSeparateEveryDifferentSetOfRanges() {
+    var random = new Random(7);
+    for (int round = 0; round < 200; round++) {
+      var ranges = new ArrayList<CharacterRange>();
+      for (int i = random.nextInt(8); i >= 0; i--) {
+        var from = (char) random.nextInt(40);
+        ranges.add(new CharacterRange(from, (char) (from + random.nextInt(10))));
+      }
+      var table = newBuilder(ranges).build();
 
-    for (var testCase : TEST_CASES) {
-      var ranges = parse(testCase[0]);
-      var expected = Arrays.stream(testCase[1].split(",")).map(str -> str.charAt(0)).toList();
-      Assert.assertEquals(expected, CharsNumTableBuilder.getSortedCharArray(ranges));
+      // Two adjacent chars are in the same class iff they are in the same ranges.
+      for (int i = 0; i < 64; i++) {
+        var ch = (char) i;
+        var num = table.queryNumOfInputChar(ch);
+        var covered = ranges.stream().anyMatch(r -> r.contains(ch));
+        Assert.assertEquals(ranges + ": " + ch, covered, num != ICharsNumTable.INVALID_CHAR_NUM);
+        if (!covered || ch == 0) {
+          continue;
+        }
+        var prev = (char) (ch - 1);
+        var sameRanges = ranges.stream().allMatch(r -> r.contains(prev) == r.contains(ch));
+        Assert.assertEquals(ranges + ": " + ch, sameRanges, num == table.queryNumOfInputChar(prev));
+      }
+      for (var range : ranges) {
+        Assert.assertTrue(table.getNumsOfCharRange(range).isPresent());
+      }
     }
   }
 
+  @Test
+  public void fullCharRange() {
+    var table =
+        newBuilder(List.of(CharacterRange.RANGE_ANY, CharacterRange.of(Character.MAX_VALUE)))
+            .build();
+    Assert.assertEquals(
+        List.of(
+            CharacterRange.of((char) 0, (char) (Character.MAX_VALUE - 1)),
+            CharacterRange.of(Character.MAX_VALUE)),
+        table.getTable());
+  }
+
   @Test
   public void testingSplitOverlappedRanges() {
     final var TEST_CASES =
@@ -76,9 +99,7 @@ public class CharsNumTableBuilderTest {
         };
 
     for (var testCase : TEST_CASES) {
-      var arg = parse(testCase[0]);
-      var builder = newBuilder(arg);
-      var actual = builder.splitOverlappedRanges(arg);
+      var actual = newBuilder(parse(testCase[0])).build().getTable();
       var expected = parse(testCase[1]);
       Assert.assertEquals(expected, actual);
     }
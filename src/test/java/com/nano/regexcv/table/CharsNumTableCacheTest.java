@@ -0,0 +1,71 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.table;
+
+import static org.junit.Assert.*;
+
+import com.nano.regexcv.syntax.RegexParser;
+import java.util.List;
+import org.junit.Test;
+
+public class CharsNumTableCacheTest {
+
+  private static RTreeWithTable collect(String regex, CharsNumTableCache cache) {
+    return new RegexParser().next(new CharacterSetCollector(cache)).accept(regex);
+  }
+
+  @Test
+  public void equalClassesShouldShareTable() {
+    var cache = new CharsNumTableCache(16);
+    var table = collect("\\w+@\\w+", cache).table;
+    // Different ranges that are split into the same classes.
+    assertSame(table, collect("(\\w|@)*", cache).table);
+    assertSame(table, collect("[@a-zA-Z0-9_]@\\w", cache).table);
+    assertNotSame(table, collect("\\w+", cache).table);
+    assertEquals(2, cache.size());
+    assertEquals(2, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+
+    // Without a cache, every tree gets its own table.
+    assertNotSame(collect("\\d", null).table, collect("\\d", null).table);
+  }
+
+  @Test
+  public void leastRecentlyUsedShouldBeEvicted() {
+    var cache = new CharsNumTableCache(2);
+    var a = collect("a", cache).table;
+    collect("b", cache);
+    assertSame(a, collect("a", cache).table);
+    collect("c", cache);
+    assertEquals(2, cache.size());
+    assertSame(a, collect("a", cache).table);
+    assertEquals(3, cache.getMissCount());
+  }
+
+  @Test
+  public void patternsCollectedTogetherShouldShareTable() {
+    var parser = new RegexParser();
+    var trees = List.of(parser.accept("[a-f]+"), parser.accept("[d-z]"), parser.accept("x"));
+    var results = new CharacterSetCollector(null).acceptAll(trees);
+    assertEquals(3, results.size());
+    for (var result : results) {
+      assertSame(results.get(0).table, result.table);
+    }
+    // a-c, d-f, g-w, x and y-z.
+    assertEquals(5, results.get(0).table.getTableSize());
+    assertSame(trees.get(1), results.get(1).tree);
+  }
+}
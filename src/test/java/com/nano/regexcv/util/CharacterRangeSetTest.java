@@ -20,6 +20,9 @@ import static org.junit.Assert.*;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 import org.junit.Test;
 
 public class CharacterRangeSetTest {
@@ -104,6 +107,27 @@ public class CharacterRangeSetTest {
     assertTrue(chars.containsAll(Arrays.asList('a', 'c', 'f', 'j', 'x')));
   }
 
+  @Test
+  public void rangesOfTheFirstAndLastChars() {
+    CharacterRangeSet set = new CharacterRangeSet(1);
+    set.addChar((char) 0);
+    set.addChar((char) 0);
+    set.addChar(Character.MAX_VALUE);
+    set.addRange((char) 0, Character.MAX_VALUE);
+    assertEquals(3, set.size());
+    assertTrue(set.contains((char) 0, (char) 0));
+    assertTrue(set.contains(Character.MAX_VALUE, Character.MAX_VALUE));
+    assertFalse(set.contains((char) 0, (char) 1));
+    assertArrayEquals(new char[] {0, Character.MAX_VALUE}, set.leftChars());
+    assertArrayEquals(new char[] {0, Character.MAX_VALUE}, set.rightChars());
+    assertEquals(
+        Set.of(
+            CharacterRange.of((char) 0),
+            CharacterRange.of(Character.MAX_VALUE),
+            CharacterRange.RANGE_ANY),
+        StreamSupport.stream(set.spliterator(), false).collect(Collectors.toSet()));
+  }
+
   @Test
   public void shouldRejectIllegalInitialCapacity() {
     assertThrows(IllegalArgumentException.class, () -> new CharacterRangeSet(0));
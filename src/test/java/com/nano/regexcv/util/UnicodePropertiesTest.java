@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class UnicodePropertiesTest {
+
+  private static boolean contains(int[] ranges, int cp) {
+    var l = 0;
+    var r = ranges.length / 2 - 1;
+    while (r >= l) {
+      var mid = l + ((r - l) >> 1);
+      if (cp < ranges[2 * mid]) {
+        r = mid - 1;
+      } else if (cp > ranges[2 * mid + 1]) {
+        l = mid + 1;
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Test
+  public void rangesShouldMatchCharacterProperties() {
+    var letters = UnicodeProperties.rangesOf("L");
+    var uppercase = UnicodeProperties.rangesOf("Lu");
+    var greek = UnicodeProperties.rangesOf("IsGreek");
+    for (int cp = 0; cp <= Character.MAX_CODE_POINT; cp++) {
+      assertEquals(Character.isLetter(cp), contains(letters, cp));
+      assertEquals(Character.getType(cp) == Character.UPPERCASE_LETTER, contains(uppercase, cp));
+      assertEquals(
+          Character.UnicodeScript.of(cp) == Character.UnicodeScript.GREEK, contains(greek, cp));
+    }
+  }
+
+  @Test
+  public void rangesShouldIncludeSupplementaryCodePoints() {
+    var symbols = UnicodeProperties.rangesOf("So");
+    assertTrue(contains(symbols, 0x1F600));
+    assertTrue(contains(UnicodeProperties.rangesOf("IsHan"), 0x20000));
+    assertTrue(contains(UnicodeProperties.rangesOf("Cs"), Character.MIN_SURROGATE));
+    var others = UnicodeProperties.rangesOf("C");
+    assertEquals(Character.MAX_CODE_POINT, others[others.length - 1]);
+  }
+
+  @Test
+  public void rangesShouldBeSortedAndMerged() {
+    var ranges = UnicodeProperties.rangesOf("gc=N");
+    assertArrayEquals(new CodePointRanges().addAll(ranges).toArray(), ranges);
+    for (int i = 2; i < ranges.length; i += 2) {
+      assertTrue(ranges[i - 1] + 1 < ranges[i]);
+    }
+  }
+
+  @Test
+  public void rangesShouldBeShared() {
+    assertSame(UnicodeProperties.rangesOf("Lu"), UnicodeProperties.rangesOf("Lu"));
+    assertSame(UnicodeProperties.rangesOf("Lu"), UnicodeProperties.rangesOf("gc=Lu"));
+    assertSame(UnicodeProperties.rangesOf("sc=Han"), UnicodeProperties.rangesOf("IsHani"));
+    assertSame(UnicodeProperties.rangesOf("IsGreek"), UnicodeProperties.rangesOf("script=GREEK"));
+    assertEquals(UnicodeProperties.forName("L"), UnicodeProperties.forName("IsL"));
+    assertNull(UnicodeProperties.rangesOf("Foo"));
+    assertNull(UnicodeProperties.rangesOf("gc=Greek"));
+  }
+}
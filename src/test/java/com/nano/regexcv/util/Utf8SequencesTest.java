@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021 nano1
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nano.regexcv.util;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.Test;
+
+public class Utf8SequencesTest {
+
+  @Test
+  public void bmp() {
+    assertEquals(
+        "[[00-7F], [C2-DF][80-BF], [E0][A0-BF][80-BF], [E1-EC][80-BF][80-BF],"
+            + " [ED][80-9F][80-BF], [EE-EF][80-BF][80-BF]]",
+        toString(Utf8Sequences.of(0, 0xFFFF)));
+    assertEquals("[[61-7A]]", toString(Utf8Sequences.of('a', 'z')));
+    assertEquals("[]", toString(Utf8Sequences.of(0xD800, 0xDFFF)));
+  }
+
+  @Test
+  public void everyCodePointShouldBeMatchedOnce() {
+    var from = 0x7A;
+    var to = 0x10123;
+    var sequences = Utf8Sequences.of(from, to);
+    for (int cp = 0; cp <= to + 0x100; cp++) {
+      if (Character.isSurrogate((char) cp) && cp <= Character.MAX_VALUE) {
+        continue;
+      }
+      var bytes = new String(Character.toChars(cp)).getBytes(StandardCharsets.UTF_8);
+      var count = sequences.stream().filter(sequence -> matches(sequence, bytes)).count();
+      assertEquals("U+" + Integer.toHexString(cp), cp >= from && cp <= to ? 1 : 0, count);
+    }
+  }
+
+  @Test
+  public void encode() {
+    for (var cp : new int[] {0, 0x7F, 0x80, 0x7FF, 0x800, 0xFFFF, 0x10000, 0x10FFFF}) {
+      var expected = new String(Character.toChars(cp)).getBytes(StandardCharsets.UTF_8);
+      var actual = Utf8Sequences.encode(cp);
+      assertEquals(expected.length, actual.length);
+      for (int i = 0; i < expected.length; i++) {
+        assertEquals(expected[i] & 0xFF, actual[i]);
+      }
+    }
+  }
+
+  private static boolean matches(CharacterRange[] sequence, byte[] bytes) {
+    if (sequence.length != bytes.length) {
+      return false;
+    }
+    for (int i = 0; i < bytes.length; i++) {
+      if (!sequence[i].contains((char) (bytes[i] & 0xFF))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String toString(List<CharacterRange[]> sequences) {
+    var sb = new StringBuilder("[");
+    for (var sequence : sequences) {
+      if (sb.length() > 1) {
+        sb.append(", ");
+      }
+      for (var range : sequence) {
+        sb.append(
+            range.from == range.to
+                ? String.format("[%02X]", (int) range.from)
+                : String.format("[%02X-%02X]", (int) range.from, (int) range.to));
+      }
+    }
+    return sb.append("]").toString();
+  }
+}